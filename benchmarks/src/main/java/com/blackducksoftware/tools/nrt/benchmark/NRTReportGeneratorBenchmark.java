@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blackducksoftware.tools.commonframework.core.config.ConfigConstants.APPLICATION;
+import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
+import com.blackducksoftware.tools.nrt.generator.NRTReportGenerator;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Measures how the report generator scales with the number of components, the
+ * size of the license texts and the number of paths per component.
+ * 
+ * The data set is synthetic but shaped like a real project: licenses are
+ * drawn from a small pool shared by all components, paths share deep
+ * directory prefixes and copyrights repeat across components.
+ * 
+ * Run with -prof gc for the allocation rate and with
+ * -prof com.blackducksoftware.tools.nrt.benchmark.PeakHeapProfiler for the
+ * peak heap.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class NRTReportGeneratorBenchmark {
+
+    private static final String CONFIG = "nrt_benchmark.properties";
+
+    // Number of distinct licenses the components draw from
+    private static final int LICENSE_POOL_SIZE = 50;
+
+    // Number of distinct copyright statements the components draw from
+    private static final int COPYRIGHT_POOL_SIZE = 2000;
+
+    private static final int COPYRIGHTS_PER_COMPONENT = 5;
+
+    @Param({ "100", "1000", "10000", "50000" })
+    public int componentCount;
+
+    @Param({ "1000", "30000" })
+    public int licenseTextSize;
+
+    @Param({ "10", "100" })
+    public int pathsPerComponent;
+
+    private File workDirectory;
+
+    private File htmlOutput;
+
+    private TreeMap<String, ComponentModel> components;
+
+    private NRTReportGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = Files.createTempDirectory("nrt_benchmark").toFile();
+        htmlOutput = new File(workDirectory, "report.html");
+
+        File configFile = new File(workDirectory, CONFIG);
+        copyResource(CONFIG, configFile);
+        NRTConfigurationManager config = new NRTConfigurationManager(
+                configFile.getAbsolutePath(), APPLICATION.PROTEX, null);
+
+        components = createComponents();
+        generator = new NRTReportGenerator(config, components);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDirectory);
+    }
+
+    @Benchmark
+    public File generateHTMLFromTemplate() {
+        generator.generateHTMLFromTemplate(htmlOutput);
+        return htmlOutput;
+    }
+
+    @Benchmark
+    public String generateJSONFromObject() {
+        return generator.generateJSONFromObject(components.values());
+    }
+
+    @Benchmark
+    public File generateTextReport() throws Exception {
+        File projectPrefix = new File(workDirectory, "text");
+        generator.generateTextReport(projectPrefix.getAbsolutePath());
+        return projectPrefix;
+    }
+
+    private TreeMap<String, ComponentModel> createComponents() {
+        // Same data for every run of the same parameters
+        Random random = new Random(42);
+
+        List<LicenseModel> licenses = new ArrayList<LicenseModel>();
+        for (int i = 0; i < LICENSE_POOL_SIZE; i++) {
+            LicenseModel license = new LicenseModel();
+            license.setId("license_" + i);
+            license.setName("License " + i);
+            license.setText(createLicenseText(random, i));
+            licenses.add(license);
+        }
+
+        IdentifiedFilesIndex identifiedFiles = new IdentifiedFilesIndex();
+        TreeMap<String, ComponentModel> componentMap = new TreeMap<String, ComponentModel>();
+        for (int i = 0; i < componentCount; i++) {
+            ComponentModel component = new ComponentModel();
+            component.setComponentId("component_" + i);
+            component.setName("Component " + i);
+            component.setVersion("1." + (i % 10));
+            component.setHomePage("http://example.com/component/" + i);
+
+            // Most components carry one license, some are dual licensed
+            int licenseCount = 1 + (random.nextInt(4) == 0 ? 1 : 0);
+            for (int l = 0; l < licenseCount; l++) {
+                component.addNewLicense(licenses.get(random
+                        .nextInt(LICENSE_POOL_SIZE)));
+            }
+
+            for (int c = 0; c < COPYRIGHTS_PER_COMPONENT; c++) {
+                int owner = random.nextInt(COPYRIGHT_POOL_SIZE);
+                component.addNewCopyright("Copyright (c) "
+                        + (1995 + owner % 20) + " The Owner " + owner
+                        + " and contributors. All rights reserved.");
+            }
+
+            String key = component.getNameAndVersion();
+            for (int p = 0; p < pathsPerComponent; p++) {
+                identifiedFiles.addIdentifiedFile(key, "/src/main/java/com/"
+                        + "vendor" + (i % 20) + "/module" + i + "/package"
+                        + (p % 10) + "/SourceFile" + p + ".java");
+            }
+            component.addNewPaths(identifiedFiles.getPathsForComponent(key));
+
+            componentMap.put(key, component);
+        }
+        return componentMap;
+    }
+
+    private String createLicenseText(Random random, int licenseNumber) {
+        StringBuilder text = new StringBuilder(licenseTextSize + 100);
+        text.append("<p>License ").append(licenseNumber)
+                .append(" terms and conditions</p>\n");
+        while (text.length() < licenseTextSize) {
+            text.append("<p>Clause ").append(random.nextInt(1000))
+                    .append(": permission is hereby granted, free of charge, ")
+                    .append("to any person obtaining a copy of this software")
+                    .append(" &amp; associated documentation files.</p>\n");
+        }
+        return text.toString();
+    }
+
+    private void copyResource(String resource, File target) throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(
+                resource)) {
+            if (in == null) {
+                throw new IOException("Missing resource: " + resource);
+            }
+            Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
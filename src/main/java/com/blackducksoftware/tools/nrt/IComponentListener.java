@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt;
+
+import java.util.List;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+
+/**
+ * Receives the components of a project from a streaming processor as soon as
+ * each of them is ready.
+ * 
+ * Calls are made one at a time from the thread that called the processor.
+ * 
+ */
+public interface IComponentListener {
+
+    /**
+     * Called once, before any component.
+     * 
+     * @param sortedKeys
+     *            Sorted name:version keys of every component that will follow
+     * @throws Exception
+     *             stops the processing of the project
+     */
+    public void componentKeys(List<String> sortedKeys) throws Exception;
+
+    /**
+     * Called once for every key, in the order the components are completed.
+     * The processor keeps no reference to the component afterwards.
+     * 
+     * @param key
+     *            name:version key of the component
+     * @param component
+     * @throws Exception
+     *             stops the processing of the project
+     */
+    public void componentProcessed(String key, ComponentModel component)
+            throws Exception;
+}
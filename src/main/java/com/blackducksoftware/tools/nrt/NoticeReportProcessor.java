@@ -24,20 +24,27 @@ package com.blackducksoftware.tools.nrt;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
 import com.blackducksoftware.tools.commonframework.core.config.ConfigConstants.APPLICATION;
 import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
 import com.blackducksoftware.tools.nrt.config.NRTConstants;
 import com.blackducksoftware.tools.nrt.generator.NRTReportGenerator;
+import com.blackducksoftware.tools.nrt.generator.ReportTemplate;
 import com.blackducksoftware.tools.nrt.model.ComponentModel;
 
 /**
@@ -87,12 +94,87 @@ public class NoticeReportProcessor {
         }
     }
 
+    /**
+     * Discards the cached Protex responses of the project before processing,
+     * must be called before connecting.
+     * 
+     * @param invalidateCache
+     */
+    public void setInvalidateCache(boolean invalidateCache) {
+        nrtConfigManager.setCacheInvalidate(invalidateCache);
+    }
+
     /**
      * Processes the report based on the configuration file.
      * 
      * @throws Exception
      */
     public void processReport() throws Exception {
+        processReport(projectName, outputFile);
+    }
+
+    /**
+     * Batch mode: processes the reports of several projects concurrently
+     * over the single connection of this processor, so the login as well as
+     * the license and search pattern lookups are shared by all of them. Each
+     * report is named after its project.
+     * 
+     * A project that fails does not stop the others, the failures are
+     * reported once all projects are done.
+     * 
+     * @param projectNames
+     * @throws Exception
+     */
+    public void processReports(List<String> projectNames) throws Exception {
+        if (appType != APPLICATION.PROTEX) {
+            throw new Exception("Batch mode is only available for "
+                    + APPLICATION.PROTEX);
+        }
+
+        log.info("Processing " + projectNames.size() + " projects using "
+                + nrtConfigManager.getBatchThreads() + " thread(s)");
+
+        ExecutorService batchExecutor = Executors
+                .newFixedThreadPool(nrtConfigManager.getBatchThreads());
+        Map<String, Future<?>> reports = new LinkedHashMap<String, Future<?>>();
+        try {
+            for (final String batchProjectName : projectNames) {
+                final File batchOutputFile = calculateReportNameAndLocation(
+                        batchProjectName, null,
+                        NRTConstants.REPORT_HTML_EXTENSION);
+                reports.put(batchProjectName,
+                        batchExecutor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                processReport(batchProjectName,
+                                        batchOutputFile);
+                                return null;
+                            }
+                        }));
+            }
+
+            List<String> failedProjects = new ArrayList<String>();
+            for (Map.Entry<String, Future<?>> report : reports.entrySet()) {
+                try {
+                    report.getValue().get();
+                } catch (ExecutionException e) {
+                    log.error("Unable to process project " + report.getKey(),
+                            e.getCause());
+                    failedProjects.add(report.getKey());
+                }
+            }
+
+            if (!failedProjects.isEmpty()) {
+                throw new Exception("Failure in processing projects: "
+                        + failedProjects);
+            }
+        } finally {
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    private void processReport(String reportProjectName, File reportFile)
+            throws Exception {
         log.info("Generating Report...");
 
         if (bdsProcessor == null) {
@@ -101,7 +183,7 @@ public class NoticeReportProcessor {
 
         HashMap<String, ComponentModel> components = null;
         try {
-            components = bdsProcessor.processProject(projectName);
+            components = bdsProcessor.processProject(reportProjectName);
         } catch (Exception e) {
             throw new Exception("Failure in processing", e);
         }
@@ -123,21 +205,33 @@ public class NoticeReportProcessor {
                 sortedMap);
 
         if (nrtConfigManager.isHtmlFileOutput()) {
-            reportGen.generateHTMLFromTemplate(outputFile);
-            log.info("Finished HTML processing: " + outputFile);
+            reportGen.generateHTMLFromTemplate(reportFile);
+            log.info("Finished HTML processing: " + reportFile);
+        }
+
+        if (nrtConfigManager.isNoticeFileOutput()) {
+            File noticeFile = new File(reportFile.getAbsoluteFile()
+                    .getParentFile(), FilenameUtils.getBaseName(reportFile
+                    .getName()) + NRTConstants.REPORT_NOTICE_EXTENSION);
+            reportGen.generateNoticeFile(noticeFile,
+                    reportProjectName != null ? reportProjectName
+                            : nrtConfigManager.getProjectName());
+            log.info("Finished NOTICE processing: " + noticeFile);
         }
 
         if (nrtConfigManager.isTextFileOutput()) {
             log.info("Generating text output");
-            reportGen.generateTextReport(nrtConfigManager.getProjectName());
-            log.info("Finished text processing: " + outputFile);
+            reportGen
+                    .generateTextReport(reportProjectName != null ? reportProjectName
+                            : nrtConfigManager.getProjectName());
+            log.info("Finished text processing: " + reportFile);
         }
 
         log.info("Done!");
     }
 
     /**
-     * Prepares the final report location by copying the template from the
+     * Prepares the final report location by checking the template from the
      * supplied resources and creates an appropriate name depending on
      * configuration settings.
      * 
@@ -147,7 +241,22 @@ public class NoticeReportProcessor {
      */
     public File calculateReportNameAndLocation(String extension)
             throws IOException {
-        String outputFileName = nrtConfigManager.getOutputFilename();
+        return calculateReportNameAndLocation(
+                nrtConfigManager.getProjectName(),
+                nrtConfigManager.getOutputFilename(), extension);
+    }
+
+    /**
+     * @param reportProjectName
+     *            names the report if no output file name is given
+     * @param outputFileName
+     *            may be null or empty
+     * @param extension
+     * @return
+     * @throws IOException
+     */
+    private File calculateReportNameAndLocation(String reportProjectName,
+            String outputFileName, String extension) throws IOException {
         String outputFileLocation = nrtConfigManager.getOutputFileLocation();
 
         outputFileLocation = determineLocation(outputFileLocation);
@@ -160,7 +269,7 @@ public class NoticeReportProcessor {
         } else {
             // If the output file name is not provided, then use the project
             // name
-            outputFileName = nrtConfigManager.getProjectName() + extension;
+            outputFileName = reportProjectName + extension;
             outputFile = new File(
                     new File(outputFileLocation).getAbsolutePath()
                             + File.separator + outputFileName);
@@ -169,17 +278,11 @@ public class NoticeReportProcessor {
         // Before we copy, replace space encoding if there is one
         outputFileName = cleanUpName(outputFileName);
 
-        // If HTML, copy the template over
+        // If HTML, load the template now so a broken one is reported before
+        // any processing, the reports are rendered from the loaded copy
         if (extension.equals(NRTConstants.REPORT_HTML_EXTENSION)) {
-            // Copy the template
-            String htmlTemplate = ClassLoader.getSystemResource(
-                    NRTConstants.HTML_TEMPLATE_FILE).getFile();
             try {
-                // Before we copy, replace space encoding if there is one
-                htmlTemplate = htmlTemplate.replaceAll("%20", " ");
-                Files.copy(new File(htmlTemplate).toPath(),
-                        outputFile.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING);
+                ReportTemplate.forConfig(nrtConfigManager);
             } catch (IOException e) {
                 throw new IOException(
                         "Fatal, unable to prepare HTML remplate: "
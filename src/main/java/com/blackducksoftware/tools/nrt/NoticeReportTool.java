@@ -23,6 +23,8 @@
 package com.blackducksoftware.tools.nrt;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -30,6 +32,7 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import com.blackducksoftware.tools.commonframework.core.config.ConfigConstants.APPLICATION;
@@ -75,9 +78,22 @@ public class NoticeReportTool {
         projectNameOption.setRequired(false);
         options.addOption(projectNameOption);
 
+        Option projectNamesOption = new Option(NRTConstants.CL_PROJECT_NAMES,
+                true,
+                "Comma separated names of Protex projects, processed together in one session (batch mode)");
+        projectNamesOption.setRequired(false);
+        options.addOption(projectNamesOption);
+
+        Option invalidateCacheOption = new Option(
+                NRTConstants.CL_INVALIDATE_CACHE, false,
+                "Discard cached Protex data for the project before running");
+        invalidateCacheOption.setRequired(false);
+        options.addOption(invalidateCacheOption);
+
         File configFile = null;
         APPLICATION applicationType = null;
         String projectName = null;
+        List<String> projectNames = null;
 
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -123,8 +139,27 @@ public class NoticeReportTool {
                 log.info("User specified project name: " + projectName);
             }
 
+            if (cmd.hasOption(NRTConstants.CL_PROJECT_NAMES)) {
+                projectNames = new ArrayList<String>();
+                for (String name : StringUtils.split(
+                        cmd.getOptionValue(NRTConstants.CL_PROJECT_NAMES), ",")) {
+                    if (StringUtils.isNotBlank(name)) {
+                        projectNames.add(name.trim());
+                    }
+                }
+                log.info("User specified project names: " + projectNames);
+                if (projectName == null && !projectNames.isEmpty()) {
+                    // The configuration needs a project to start from
+                    projectName = projectNames.get(0);
+                }
+            }
+
             NoticeReportProcessor processor = new NoticeReportProcessor(
                     configFile.getAbsolutePath(), applicationType, projectName);
+            if (cmd.hasOption(NRTConstants.CL_INVALIDATE_CACHE)) {
+                log.info("Invalidating cached Protex data");
+                processor.setInvalidateCache(true);
+            }
             try {
                 processor.connect();
             } catch (Exception e)
@@ -132,7 +167,11 @@ public class NoticeReportTool {
                 log.error("Connection problems: " + e.getMessage());
                 throw new Exception(e);
             }
-            processor.processReport();
+            if (projectNames != null) {
+                processor.processReports(projectNames);
+            } else {
+                processor.processReport();
+            }
 
         } catch (Exception e) {
             log.error("Error: " + e.getMessage());
@@ -0,0 +1,573 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
+import com.blackducksoftware.tools.nrt.datasource.IProtexDataSource;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.CopyrightCollapser;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+
+/**
+ * Collects copyrights for the components of a single Protex project.
+ * 
+ * Only the search patterns the user configured (copyright.patterns) are
+ * considered: discoveries are filtered by pattern id before any match request
+ * is sent, and discovery requests are limited to the origin types of those
+ * patterns. If no pattern resolves, no requests are made at all.
+ * 
+ * Paths identified to more than one component are discovered once, and the
+ * matches of each discovery are fetched once and handed to every component
+ * that owns the path.
+ * 
+ */
+public class ProtexCopyrightCollector {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    private final IProtexDataSource dataSource;
+
+    private final NRTConfigurationManager nrtConfigManager;
+
+    private final String projectId;
+
+    // Keyed by pattern id
+    private final Map<String, StringSearchPattern> patternMap;
+
+    private final List<StringSearchPatternOriginType> originTypes;
+
+    // Shared by all components, bounds the match requests in flight
+    private final ExecutorService matchExecutor;
+
+    // Null unless the discoveries were fetched in batch mode
+    private Map<String, List<StringSearchDiscovery>> discoveriesByComponent = null;
+
+    // Set when a batch failed, every component may be missing copyrights
+    private volatile boolean prefetchFailed = false;
+
+    // Per component mode, the discovery request each path was (or is being)
+    // discovered by
+    private final ConcurrentMap<String, PendingDiscovery> discoveriesByPath = new ConcurrentHashMap<String, PendingDiscovery>();
+
+    // Match contexts keyed by discovered path and string search id
+    private final ConcurrentMap<String, Future<List<String>>> matchesByDiscovery = new ConcurrentHashMap<String, Future<List<String>>>();
+
+    // Request counters
+    private final AtomicLong discoveryRequests = new AtomicLong();
+
+    private final AtomicLong skippedDiscoveryRequests = new AtomicLong();
+
+    private final AtomicLong matchRequests = new AtomicLong();
+
+    private final AtomicLong skippedMatchRequests = new AtomicLong();
+
+    private final AtomicLong sharedDiscoveryPaths = new AtomicLong();
+
+    private final AtomicLong sharedMatchRequests = new AtomicLong();
+
+    private final AtomicLong collapsedCopyrights = new AtomicLong();
+
+    public ProtexCopyrightCollector(
+            IProtexDataSource dataSource, NRTConfigurationManager nrtConfigManager, String projectId,
+            Map<String, StringSearchPattern> patternMap) {
+        this.dataSource = dataSource;
+        this.nrtConfigManager = nrtConfigManager;
+        this.projectId = projectId;
+        this.patternMap = patternMap != null ? patternMap
+                : Collections.<String, StringSearchPattern> emptyMap();
+        originTypes = getOriginTypes(this.patternMap.values());
+        matchExecutor = Executors.newFixedThreadPool(nrtConfigManager
+                .getCopyrightMatchMaxInFlight());
+    }
+
+    /**
+     * Copyrights are only collected when the user wants to see them, file
+     * paths are available and at least one search pattern was resolved.
+     * 
+     * @return
+     */
+    public boolean isEnabled() {
+        return nrtConfigManager.isShowCopyrights()
+                && nrtConfigManager.isShowFilePaths() && !patternMap.isEmpty();
+    }
+
+    /**
+     * Batch mode: collects every identified path in the project, discovers
+     * them in large batches and partitions the results back onto the owning
+     * components through the path to component index. This replaces one
+     * discovery call per component with a handful of bulk calls.
+     * 
+     * @param identifiedFiles
+     * @param componentKeys
+     *            the components whose paths are discovered
+     */
+    public void prefetchDiscoveries(IdentifiedFilesIndex identifiedFiles,
+            Collection<String> componentKeys) {
+        discoveriesByComponent = new HashMap<String, List<StringSearchDiscovery>>();
+
+        Set<String> componentPaths = new HashSet<String>();
+        for (String componentKey : componentKeys) {
+            Set<String> paths = identifiedFiles
+                    .getPathsForComponent(componentKey);
+            if (paths != null) {
+                componentPaths.addAll(paths);
+            }
+        }
+
+        // Sorted so that the batches (and the order of the discoveries) are
+        // the same from run to run
+        List<String> allPaths = new ArrayList<String>(componentPaths);
+        Collections.sort(allPaths);
+
+        int batchSize = nrtConfigManager.getCopyrightDiscoveryBatchSize();
+        if (!isEnabled()) {
+            skippedDiscoveryRequests.addAndGet((allPaths.size()
+                    + batchSize - 1) / batchSize);
+            return;
+        }
+
+        log.info("Discovering string searches for " + allPaths.size()
+                + " paths in batches of " + batchSize);
+
+        for (int start = 0; start < allPaths.size(); start += batchSize) {
+            List<String> batch = allPaths.subList(start,
+                    Math.min(start + batchSize, allPaths.size()));
+
+            List<StringSearchDiscovery> searchDiscoveries = null;
+            try {
+                searchDiscoveries = getStringSearchDiscoveries(batch);
+            } catch (Exception e) {
+                log.error("Unable to get search discoveries for batch starting at: "
+                        + batch.get(0) + ": " + e.getMessage());
+                prefetchFailed = true;
+                continue;
+            }
+
+            for (StringSearchDiscovery searchDiscovery : searchDiscoveries) {
+                Set<String> owners = identifiedFiles
+                        .getComponentsForPath(searchDiscovery.getFilePath());
+                if (owners.isEmpty()) {
+                    log.debug("No component owns discovered path: "
+                            + searchDiscovery.getFilePath());
+                }
+                for (String owner : owners) {
+                    List<StringSearchDiscovery> componentDiscoveries = discoveriesByComponent
+                            .get(owner);
+                    if (componentDiscoveries == null) {
+                        componentDiscoveries = new ArrayList<StringSearchDiscovery>();
+                        discoveriesByComponent.put(owner,
+                                componentDiscoveries);
+                    }
+                    componentDiscoveries.add(searchDiscovery);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads all the copyrights for the component
+     * 
+     * @param componentKey
+     *            name:version of the component
+     * @param componentModel
+     * @return false if any of the requests failed, the copyrights of the
+     *         component may then be incomplete
+     */
+    public boolean collectCopyrights(String componentKey,
+            ComponentModel componentModel) {
+        if (!nrtConfigManager.isShowCopyrights()
+                || !nrtConfigManager.isShowFilePaths()) {
+            return true;
+        }
+        if (!isEnabled()) {
+            if (discoveriesByComponent == null) {
+                skippedDiscoveryRequests.incrementAndGet();
+            }
+            return true;
+        }
+
+        log.info("Getting Copyright Info for component: "
+                + componentModel.getNameAndVersion());
+
+        boolean complete = !prefetchFailed;
+        CopyrightCollapser collapser = null;
+        if (nrtConfigManager.isCopyrightCollapse()) {
+            collapser = new CopyrightCollapser(
+                    nrtConfigManager.getCopyrightCollapseSimilarity() / 100.0);
+        }
+        try {
+            List<StringSearchDiscovery> searchDiscoveries = null;
+            if (discoveriesByComponent != null) {
+                searchDiscoveries = discoveriesByComponent.get(componentKey);
+                if (searchDiscoveries == null) {
+                    searchDiscoveries = Collections.emptyList();
+                }
+            } else {
+                searchDiscoveries = discoverPaths(componentModel.getPaths());
+                if (hasFailedDiscovery(componentModel.getPaths())) {
+                    complete = false;
+                }
+            }
+
+            log.debug("Found search discovery count: "
+                    + searchDiscoveries.size());
+
+            // Drop the discoveries for patterns the user did not ask for
+            // before paying for their matches
+            List<StringSearchDiscovery> wantedDiscoveries = new ArrayList<StringSearchDiscovery>();
+            for (StringSearchDiscovery searchDiscovery : searchDiscoveries) {
+                if (patternMap.containsKey(searchDiscovery.getStringSearchId())) {
+                    wantedDiscoveries.add(searchDiscovery);
+                }
+            }
+            skippedMatchRequests.addAndGet(searchDiscoveries.size()
+                    - wantedDiscoveries.size());
+
+            Integer contextLength = nrtConfigManager
+                    .getCopyrightContextLength();
+            log.debug("Context length: " + contextLength);
+
+            // Fan the match requests out, then merge the results back in
+            // discovery order so the copyright order stays deterministic.
+            // Matches already requested by another owner of the same path are
+            // reused rather than fetched again.
+            List<Future<List<String>>> matchFutures = new ArrayList<Future<List<String>>>();
+            for (StringSearchDiscovery searchDiscovery : wantedDiscoveries) {
+                matchFutures.add(getMatches(searchDiscovery, contextLength));
+            }
+
+            for (int i = 0; i < matchFutures.size(); i++) {
+                StringSearchDiscovery searchDiscovery = wantedDiscoveries
+                        .get(i);
+                List<String> matches = null;
+                try {
+                    matches = matchFutures.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("Unable to get search matches for: "
+                            + searchDiscovery.getFilePath() + ": "
+                            + e.getCause().getMessage());
+                    complete = false;
+                    continue;
+                }
+
+                log.debug("Found matches for discovery: "
+                        + searchDiscovery.getStringSearchId() + ": "
+                        + matches.size());
+                for (String foundMatch : matches) {
+                    if (collapser != null) {
+                        collapser.add(foundMatch);
+                    } else {
+                        componentModel.addNewCopyright(foundMatch);
+                    }
+                }
+            }
+
+        } catch (Exception e) {
+            log.error("Unable to get search pattern information: "
+                    + e.getMessage());
+            complete = false;
+        }
+
+        if (collapser != null) {
+            for (String copyright : collapser.getCopyrights()) {
+                componentModel.addNewCopyright(copyright);
+            }
+            collapsedCopyrights.addAndGet(collapser.getCollapsedCount());
+        }
+        return complete;
+    }
+
+    /**
+     * Logs how many requests were sent and how many were avoided because they
+     * could not match a configured pattern.
+     */
+    public void logStatistics() {
+        log.info("String search discovery requests: " + discoveryRequests
+                + " sent, " + skippedDiscoveryRequests + " avoided");
+        log.info("String search match requests: " + matchRequests
+                + " sent, " + skippedMatchRequests + " avoided");
+        log.info("Shared with other components: " + sharedDiscoveryPaths
+                + " discovered paths, " + sharedMatchRequests
+                + " match requests");
+        if (nrtConfigManager.isCopyrightCollapse()) {
+            log.info("Near duplicate copyrights collapsed: "
+                    + collapsedCopyrights);
+        }
+    }
+
+    public long getSkippedDiscoveryRequests() {
+        return skippedDiscoveryRequests.get();
+    }
+
+    public long getSkippedMatchRequests() {
+        return skippedMatchRequests.get();
+    }
+
+    /**
+     * Stops the match workers, must be called once the project is done.
+     */
+    public void shutdown() {
+        matchExecutor.shutdownNow();
+    }
+
+    /**
+     * Per component mode: discovers only the paths no other component has
+     * discovered yet, then assembles the discoveries for all of the
+     * component's paths (in path order).
+     * 
+     * @param componentPaths
+     * @return
+     * @throws Exception
+     */
+    private List<StringSearchDiscovery> discoverPaths(
+            Collection<String> componentPaths) throws Exception {
+        List<String> paths = new ArrayList<String>(componentPaths);
+        Collections.sort(paths);
+
+        PendingDiscovery ourDiscovery = new PendingDiscovery();
+        List<String> claimedPaths = new ArrayList<String>();
+        for (String path : paths) {
+            if (discoveriesByPath.putIfAbsent(path, ourDiscovery) == null) {
+                claimedPaths.add(path);
+            }
+        }
+        sharedDiscoveryPaths.addAndGet(paths.size() - claimedPaths.size());
+
+        // Always finish our own request before waiting on anybody else's
+        if (!claimedPaths.isEmpty()) {
+            try {
+                ourDiscovery.complete(claimedPaths,
+                        getStringSearchDiscoveries(claimedPaths));
+            } catch (Exception e) {
+                ourDiscovery.fail();
+                throw e;
+            }
+        }
+
+        List<StringSearchDiscovery> searchDiscoveries = new ArrayList<StringSearchDiscovery>();
+        for (String path : paths) {
+            searchDiscoveries.addAll(discoveriesByPath.get(path)
+                    .getDiscoveries(path));
+        }
+        // Anything the server reported under a path we did not ask for stays
+        // with the component that asked
+        searchDiscoveries.addAll(ourDiscovery.getUnclaimedDiscoveries());
+
+        return searchDiscoveries;
+    }
+
+    /**
+     * @param componentPaths
+     * @return true if the discovery of any of the paths failed, possibly in a
+     *         request made for another component
+     * @throws InterruptedException
+     */
+    private boolean hasFailedDiscovery(Collection<String> componentPaths)
+            throws InterruptedException {
+        for (String path : componentPaths) {
+            PendingDiscovery pathDiscovery = discoveriesByPath.get(path);
+            if (pathDiscovery != null && pathDiscovery.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the (possibly shared) match contexts for the discovery,
+     * scheduling the request if nobody asked for it yet.
+     * 
+     * @param searchDiscovery
+     * @param contextLength
+     * @return
+     */
+    private Future<List<String>> getMatches(
+            StringSearchDiscovery searchDiscovery, Integer contextLength) {
+        FutureTask<List<String>> matchTask = new FutureTask<List<String>>(
+                new StringSearchMatchTask(searchDiscovery, contextLength));
+        if (searchDiscovery.getFilePath() == null) {
+            matchExecutor.execute(matchTask);
+            return matchTask;
+        }
+
+        String matchKey = searchDiscovery.getFilePath() + "|"
+                + searchDiscovery.getStringSearchId();
+        Future<List<String>> existing = matchesByDiscovery.putIfAbsent(
+                matchKey, matchTask);
+        if (existing != null) {
+            sharedMatchRequests.incrementAndGet();
+            return existing;
+        }
+        matchExecutor.execute(matchTask);
+        return matchTask;
+    }
+
+    /**
+     * Runs a string search discovery request for the given file paths.
+     * 
+     * @param paths
+     * @return
+     * @throws Exception
+     */
+    private List<StringSearchDiscovery> getStringSearchDiscoveries(
+            Collection<String> paths) throws Exception {
+        discoveryRequests.incrementAndGet();
+        return dataSource.getStringSearchDiscoveries(projectId,
+                new ArrayList<String>(paths), originTypes);
+    }
+
+    /**
+     * Only the origin types of the configured patterns need to be searched.
+     * Falls back to all origin types if a pattern does not report its own.
+     * 
+     * @param patterns
+     * @return
+     */
+    private List<StringSearchPatternOriginType> getOriginTypes(
+            Collection<StringSearchPattern> patterns) {
+        Set<StringSearchPatternOriginType> types = EnumSet
+                .noneOf(StringSearchPatternOriginType.class);
+        for (StringSearchPattern pattern : patterns) {
+            if (pattern.getOriginType() == null) {
+                types = EnumSet.of(StringSearchPatternOriginType.CUSTOM,
+                        StringSearchPatternOriginType.STANDARD,
+                        StringSearchPatternOriginType.PROJECT_LOCAL);
+                break;
+            }
+            types.add(pattern.getOriginType());
+        }
+        return new ArrayList<StringSearchPatternOriginType>(types);
+    }
+
+    /**
+     * Fetches the match contexts for a single string search discovery
+     */
+    private class StringSearchMatchTask implements Callable<List<String>> {
+
+        private final StringSearchDiscovery searchDiscovery;
+
+        private final Integer contextLength;
+
+        private StringSearchMatchTask(StringSearchDiscovery searchDiscovery,
+                Integer contextLength) {
+            this.searchDiscovery = searchDiscovery;
+            this.contextLength = contextLength;
+        }
+
+        @Override
+        public List<String> call() throws Exception {
+            matchRequests.incrementAndGet();
+            return dataSource.getStringSearchMatches(projectId,
+                    searchDiscovery, contextLength);
+        }
+    }
+
+    /**
+     * A discovery request issued by one component for the paths it was the
+     * first to ask about. Other owners of those paths wait for it to finish.
+     * The results are only read once the latch is released.
+     */
+    private static class PendingDiscovery {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile boolean failed = false;
+
+        private final Map<String, List<StringSearchDiscovery>> discoveriesByPath = new HashMap<String, List<StringSearchDiscovery>>();
+
+        // Discoveries reported under a path that was not requested
+        private final List<StringSearchDiscovery> unclaimedDiscoveries = new ArrayList<StringSearchDiscovery>();
+
+        private void complete(Collection<String> requestedPaths,
+                List<StringSearchDiscovery> searchDiscoveries) {
+            Set<String> requested = new HashSet<String>(requestedPaths);
+            for (StringSearchDiscovery searchDiscovery : searchDiscoveries) {
+                String path = searchDiscovery.getFilePath();
+                if (!requested.contains(path)) {
+                    unclaimedDiscoveries.add(searchDiscovery);
+                    continue;
+                }
+                List<StringSearchDiscovery> pathDiscoveries = discoveriesByPath
+                        .get(path);
+                if (pathDiscoveries == null) {
+                    pathDiscoveries = new ArrayList<StringSearchDiscovery>();
+                    discoveriesByPath.put(path, pathDiscoveries);
+                }
+                pathDiscoveries.add(searchDiscovery);
+            }
+            done.countDown();
+        }
+
+        private void fail() {
+            failed = true;
+            done.countDown();
+        }
+
+        private boolean isFailed() throws InterruptedException {
+            done.await();
+            return failed;
+        }
+
+        private List<StringSearchDiscovery> getDiscoveries(String path)
+                throws InterruptedException {
+            done.await();
+            List<StringSearchDiscovery> pathDiscoveries = discoveriesByPath
+                    .get(path);
+            if (pathDiscoveries == null) {
+                return Collections.emptyList();
+            }
+            return pathDiscoveries;
+        }
+
+        private List<StringSearchDiscovery> getUnclaimedDiscoveries()
+                throws InterruptedException {
+            done.await();
+            return unclaimedDiscoveries;
+        }
+    }
+}
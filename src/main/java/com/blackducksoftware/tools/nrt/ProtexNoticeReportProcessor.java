@@ -1,49 +1,122 @@
 package com.blackducksoftware.tools.nrt;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
-import com.blackducksoftware.sdk.fault.SdkFault;
 import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
-import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
-import com.blackducksoftware.sdk.protex.project.codetree.CharEncoding;
-import com.blackducksoftware.sdk.protex.project.codetree.CodeTreeNode;
-import com.blackducksoftware.sdk.protex.project.codetree.CodeTreeNodeType;
-import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
-import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscoveryWithMatches;
-import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchMatch;
-import com.blackducksoftware.sdk.protex.report.ReportSectionType;
-import com.blackducksoftware.tools.commonframework.standard.common.ProjectPojo;
 import com.blackducksoftware.tools.commonframework.standard.protex.ProtexProjectPojo;
 import com.blackducksoftware.tools.connector.protex.IProtexServerWrapper;
 import com.blackducksoftware.tools.connector.protex.ProtexServerWrapper;
-import com.blackducksoftware.tools.connector.protex.license.ProtexLicensePojo;
-import com.blackducksoftware.tools.connector.protex.report.Format;
-import com.blackducksoftware.tools.connector.protex.report.ReportUtils;
 import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
 import com.blackducksoftware.tools.nrt.config.NRTConstants;
+import com.blackducksoftware.tools.nrt.datasource.CachingProtexDataSource;
+import com.blackducksoftware.tools.nrt.datasource.GuardedProtexDataSource;
+import com.blackducksoftware.tools.nrt.datasource.IProtexDataSource;
+import com.blackducksoftware.tools.nrt.datasource.ProtexProject;
+import com.blackducksoftware.tools.nrt.datasource.ProtexServerDataSource;
+import com.blackducksoftware.tools.nrt.datasource.RecordingProtexDataSource;
+import com.blackducksoftware.tools.nrt.datasource.ReplayProtexDataSource;
 import com.blackducksoftware.tools.nrt.model.ComponentModel;
-import com.blackducksoftware.tools.nrt.model.IDFilesElement;
+import com.blackducksoftware.tools.nrt.model.ContentDigest;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
 import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.blackducksoftware.tools.nrt.model.PathSet;
+import com.blackducksoftware.tools.nrt.model.ReportSnapshot;
 
-public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
+public class ProtexNoticeReportProcessor implements
+        IStreamingNoticeReportProcessor {
 
     final private Logger log = Logger.getLogger(this.getClass());
 
     private NRTConfigurationManager nrtConfigManager = null;
 
-    private IProtexServerWrapper<ProtexProjectPojo> protexWrapper = null;
+    private IProtexDataSource dataSource = null;
+
+    private GuardedProtexDataSource guardedDataSource = null;
+
+    // Copyright patterns by user specified name, shared across projects
+    private final ConcurrentMap<String, StringSearchPattern> resolvedPatterns = new ConcurrentHashMap<String, StringSearchPattern>();
 
     public ProtexNoticeReportProcessor(NRTConfigurationManager manager) throws Exception {
+        this(manager, createServerDataSource(manager));
+    }
+
+    /**
+     * Processes the projects of the given server, for example one that is
+     * not reached through the configured connection. Recording, call guards
+     * and the cache are added as configured.
+     * 
+     * @param manager
+     * @param serverDataSource
+     */
+    public ProtexNoticeReportProcessor(NRTConfigurationManager manager,
+            IProtexDataSource serverDataSource) {
         nrtConfigManager = manager;
-        protexWrapper = new ProtexServerWrapper<ProtexProjectPojo>(nrtConfigManager, true);
+        dataSource = serverDataSource;
+
+        boolean recording = nrtConfigManager.getProtexReplayLocation() == null
+                && nrtConfigManager.getProtexRecordLocation() != null;
+        if (recording) {
+            dataSource = new RecordingProtexDataSource(dataSource, new File(
+                    nrtConfigManager.getProtexRecordLocation()));
+        }
+
+        // Guard the server calls only, cache hits need no protection
+        guardedDataSource = new GuardedProtexDataSource(dataSource,
+                nrtConfigManager.getProtexCallTimeoutSeconds() * 1000L,
+                nrtConfigManager.getProtexCallRetries(),
+                nrtConfigManager.getProtexCallBackoffMs(),
+                nrtConfigManager.isProtexCallHedge(),
+                nrtConfigManager.getProtexCallHedgeMinDelayMs(),
+                nrtConfigManager.getProtexCallMaxThreads());
+        dataSource = guardedDataSource;
+
+        if (nrtConfigManager.getCacheLocation() != null) {
+            if (recording) {
+                // Cache hits would never reach the recording, which could
+                // then not be replayed
+                log.warn("The cache is not used while recording Protex responses");
+            } else {
+                CachingProtexDataSource cachingDataSource = new CachingProtexDataSource(
+                        dataSource,
+                        new File(nrtConfigManager.getCacheLocation()),
+                        nrtConfigManager.getCacheMaxSizeMb() * 1024L * 1024L);
+                cachingDataSource.setInvalidate(nrtConfigManager
+                        .isCacheInvalidate());
+                dataSource = cachingDataSource;
+            }
+        }
+    }
+
+    private static IProtexDataSource createServerDataSource(
+            NRTConfigurationManager manager) throws Exception {
+        if (manager.getProtexReplayLocation() != null) {
+            // No server at all, the responses come from a recording
+            return new ReplayProtexDataSource(new File(
+                    manager.getProtexReplayLocation()),
+                    manager.getProtexReplayLatencyMs(),
+                    manager.getProtexReplayJitterMs());
+        }
+        IProtexServerWrapper<ProtexProjectPojo> protexWrapper = new ProtexServerWrapper<ProtexProjectPojo>(manager, true);
+        return new ProtexServerDataSource(protexWrapper);
     }
 
     /**
@@ -55,14 +128,40 @@ public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
     @Override
     public HashMap<String, ComponentModel> processProject(
             String protexProjectName) throws Exception {
+        final HashMap<String, ComponentModel> componentMappings = new HashMap<String, ComponentModel>();
+
+        processProject(protexProjectName, new IComponentListener() {
+            @Override
+            public void componentKeys(List<String> sortedKeys) {
+            }
+
+            @Override
+            public void componentProcessed(String key, ComponentModel component) {
+                componentMappings.put(key, component);
+            }
+        });
+
+        return componentMappings;
+    }
+
+    /**
+     * Gets protex elements, handing out every component as soon as it has been
+     * enriched. Unchanged components of an incremental run come first.
+     * 
+     * @param protexProjectName
+     * @param listener
+     * @throws Exception
+     */
+    @Override
+    public void processProject(String protexProjectName,
+            IComponentListener listener) throws Exception {
         Map<String, StringSearchPattern> patternMap = null;
-        HashMap<String, ComponentModel> componentMappings = new HashMap<String, ComponentModel>();
 
         if (protexProjectName == null) {
             protexProjectName = nrtConfigManager.getProjectName();
         }
 
-        ProjectPojo protexProject = protexWrapper
+        ProtexProject protexProject = dataSource
                 .getProjectByName(protexProjectName);
 
         if (protexProject == null) {
@@ -70,205 +169,488 @@ public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
                     + protexProjectName);
         }
 
-        String projectId = protexProject.getProjectKey();
+        String projectId = protexProject.getProjectId();
 
-        HashMap<String, Set<String>> componentToPathMappings = new HashMap<String, Set<String>>();
+        IdentifiedFilesIndex identifiedFiles = new IdentifiedFilesIndex();
 
         log.info("Getting Components by Project");
 
-        List<ComponentModel> protexComponents = protexWrapper.getProjectManager().getComponentsByProjectId(ComponentModel.class, projectId);
+        List<ComponentModel> protexComponents = dataSource.getComponents(projectId);
 
         if (nrtConfigManager.isShowFilePaths()
                 || nrtConfigManager.isIncludeLicenseFilenamesInReport()) {
-            componentToPathMappings = getMappings(protexProject);
+            identifiedFiles = getMappings(projectId);
 
             patternMap = buildPatternMap();
         }
 
+        // In incremental mode, components that have not changed since the
+        // previous run are taken from its snapshot
+        ReportSnapshot previousSnapshot = loadSnapshot(protexProject);
+        ReportSnapshot snapshot = getSnapshotFile(protexProject) != null ? new ReportSnapshot(
+                getSettingsFingerprint()) : null;
+
+        // Build name version pair key so that we can look up the component
+        // from the identified files report. A later component with the same
+        // key replaces an earlier one.
+        Map<String, ComponentModel> componentsByKey = new LinkedHashMap<String, ComponentModel>();
         for (ComponentModel protexComp : protexComponents) {
+            String nameVersionPair = getNameVersionPair(protexComp);
+
+            if (identifiedFiles.getPathsForComponent(nameVersionPair) == null) {
+                // This should never happen.
+                log.error("Unable to find paths for component, no copyright information will be available for: " + nameVersionPair);
+                continue;
 
-            // Build name version pair key so that we can look up the component from the identified files report
-            String versionName = protexComp.getVersion();
-            if (versionName == null) {
-                versionName = NRTConstants.DEFAULT_VERSION;
             }
-            String nameVersionPair = protexComp.getName() + ":" + versionName;
+            componentsByKey.put(nameVersionPair, protexComp);
+        }
+        // References are dropped as soon as possible, so that the components
+        // handed out can be collected while the rest are still enriched
+        protexComponents = null;
+
+        Map<String, ComponentModel> unchangedComponents = new LinkedHashMap<String, ComponentModel>();
+        Map<String, ComponentModel> changedComponents = new LinkedHashMap<String, ComponentModel>();
+        Map<String, String> fingerprints = new HashMap<String, String>();
+        for (Map.Entry<String, ComponentModel> entry : componentsByKey
+                .entrySet()) {
+            String nameVersionPair = entry.getKey();
+            ComponentModel protexComp = entry.getValue();
+            PathSet paths = identifiedFiles.getPathsForComponent(nameVersionPair);
+
+            String fingerprint = getComponentFingerprint(protexComp, paths);
+            ComponentModel previousComp = previousSnapshot != null ? previousSnapshot
+                    .getComponent(nameVersionPair, fingerprint) : null;
+            if (previousComp != null) {
+                // Same data as before. The component of this run, which
+                // shares the license lookups and the path store, gets the
+                // copyrights and license files collected previously.
+                protexComp.setCopyrights(previousComp.getCopyrights());
+                if (previousComp.getLicenseModels() != null) {
+                    for (LicenseModel license : previousComp
+                            .getLicenseModels()) {
+                        protexComp.addNewLicense(license);
+                    }
+                }
+                getFilesPathsForComponent(protexComp, paths);
+                unchangedComponents.put(nameVersionPair, protexComp);
+                snapshot.putComponent(nameVersionPair, fingerprint,
+                        protexComp);
+            } else {
+                changedComponents.put(nameVersionPair, protexComp);
+                fingerprints.put(nameVersionPair, fingerprint);
+            }
+        }
+        previousSnapshot = null;
 
-            try {
+        if (snapshot != null) {
+            log.info("Reusing " + unchangedComponents.size()
+                    + " unchanged components from the previous run, "
+                    + changedComponents.size() + " components changed");
+        }
 
-                Set<String> paths = componentToPathMappings.get(nameVersionPair);
-                if (paths == null) {
-                    // This should never happen.
-                    log.error("Unable to find paths for component, no copyright information will be available for: " + nameVersionPair);
-                    continue;
+        List<String> sortedKeys = new ArrayList<String>(componentsByKey.keySet());
+        Collections.sort(sortedKeys);
+        componentsByKey = null;
+        listener.componentKeys(Collections.unmodifiableList(sortedKeys));
 
-                }
+        for (Map.Entry<String, ComponentModel> entry : unchangedComponents
+                .entrySet()) {
+            listener.componentProcessed(entry.getKey(), entry.getValue());
+        }
+        unchangedComponents = null;
 
-                // Convert common framework licenses to licensemodels
-                getLicensesForComponent(projectId, protexComp);
+        ProtexCopyrightCollector copyrightCollector = new ProtexCopyrightCollector(
+                dataSource, nrtConfigManager, projectId, patternMap);
 
-                // Load all the file paths
-                getFilesPathsForComponent(protexComp, paths);
+        // Enrich the components concurrently, each one is handed out as soon
+        // as it is done and then forgotten
+        ExecutorService enrichmentExecutor = Executors
+                .newFixedThreadPool(nrtConfigManager.getEnrichmentThreads());
+        CompletionService<ComponentModel> enrichedComponents = new ExecutorCompletionService<ComponentModel>(
+                enrichmentExecutor);
+        try {
+            // In batch mode the discoveries for the whole project are fetched
+            // up front and partitioned per component, otherwise each
+            // component discovers its own paths.
+            if (nrtConfigManager.isShowCopyrights()
+                    && nrtConfigManager.isShowFilePaths()
+                    && nrtConfigManager.getCopyrightDiscoveryBatchSize() > 0) {
+                copyrightCollector.prefetchDiscoveries(identifiedFiles,
+                        changedComponents.keySet());
+            }
 
-                // Load all the copyrights
-                getCopyrightsForComponent(projectId,
-                        protexComp, patternMap);
+            // License file contents are independent of the components, start
+            // fetching them right away. They only go to components carrying
+            // file paths, without paths there is nothing to fetch.
+            Map<String, Future<String>> licenseFileTexts = null;
+            if (nrtConfigManager.isIncludeLicenseFilenamesInReport()
+                    && nrtConfigManager.isShowFilePaths()) {
+                licenseFileTexts = fetchLicenseFiles(projectId,
+                        identifiedFiles, changedComponents.keySet(),
+                        enrichmentExecutor);
+            }
 
-            } catch (Exception e) {
-                log.warn("Unable to get component information for id: "
-                        + nameVersionPair);
+            Map<Future<ComponentModel>, ComponentEnrichmentTask> pendingTasks = new HashMap<Future<ComponentModel>, ComponentEnrichmentTask>();
+            for (Map.Entry<String, ComponentModel> entry : changedComponents
+                    .entrySet()) {
+                ComponentEnrichmentTask enrichmentTask = new ComponentEnrichmentTask(
+                        entry.getKey(), fingerprints.get(entry.getKey()),
+                        entry.getValue(), identifiedFiles
+                                .getPathsForComponent(entry.getKey()),
+                        copyrightCollector);
+                pendingTasks.put(enrichedComponents.submit(enrichmentTask),
+                        enrichmentTask);
             }
+            changedComponents = null;
+            fingerprints = null;
+
+            log.info("Enriching " + pendingTasks.size()
+                    + " components using "
+                    + nrtConfigManager.getEnrichmentThreads() + " thread(s)");
+
+            while (!pendingTasks.isEmpty()) {
+                Future<ComponentModel> enrichedComponent = enrichedComponents
+                        .take();
+                ComponentEnrichmentTask enrichmentTask = pendingTasks
+                        .remove(enrichedComponent);
+                ComponentModel model = enrichedComponent.get();
+
+                // This adds user provided licenses
+                boolean licenseFilesComplete = true;
+                if (licenseFileTexts != null) {
+                    licenseFilesComplete = attachLicenseFiles(
+                            enrichmentTask.nameVersionPair, model,
+                            identifiedFiles, licenseFileTexts);
+                }
+
+                // Components that could not be fully enriched are left out,
+                // so that the next run tries them again
+                if (snapshot != null && enrichmentTask.isComplete()
+                        && licenseFilesComplete) {
+                    snapshot.putComponent(enrichmentTask.nameVersionPair,
+                            enrichmentTask.fingerprint, model);
+                }
 
-            componentMappings.put(nameVersionPair, protexComp);
+                listener.componentProcessed(enrichmentTask.nameVersionPair,
+                        model);
+            }
+        } finally {
+            enrichmentExecutor.shutdownNow();
+            copyrightCollector.shutdown();
+        }
+        if (snapshot != null) {
+            saveSnapshot(protexProject, snapshot);
+        }
+        copyrightCollector.logStatistics();
+        guardedDataSource.logStatistics();
+        if (dataSource instanceof CachingProtexDataSource) {
+            CachingProtexDataSource cachingDataSource = (CachingProtexDataSource) dataSource;
+            log.info("Cache hits: " + cachingDataSource.getHits()
+                    + ", misses: " + cachingDataSource.getMisses());
         }
+    }
 
-        // Look into this later This adds user provided licenses
-        if (nrtConfigManager.isIncludeLicenseFilenamesInReport()) {
-            for (ComponentModel model : componentMappings.values()) {
-                for (String licenseFilename : nrtConfigManager
-                        .getLicenseFilenames()) {
-                    Set<String> paths = model.getPaths();
-                    if (paths != null) {
-                        for (String path : paths) {
-                            if (FilenameUtils.getName(path).endsWith(
-                                    licenseFilename)) {
-                                String fileText = getFileText(projectId, path);
-                                if (fileText != null) {
-                                    LicenseModel licenseModel = new LicenseModel();
-                                    licenseModel.setName(licenseFilename);
-                                    licenseModel.setId("custom_included_+"
-                                            + licenseFilename);
-                                    licenseModel.setText(fileText);
-
-                                    model.addNewLicense(licenseModel);
-                                }
-                            }
-                        }
-                    } else {
-                        log.info("No paths for component: "
-                                + model.getNameAndVersion());
-                    }
-                }
+    /**
+     * Schedules the retrieval of every indexed license file owned by one of
+     * the components. Each unique path is fetched once, no matter how many
+     * components own it.
+     * 
+     * @param projectId
+     * @param identifiedFiles
+     * @param componentKeys
+     * @param executor
+     * @return file text futures keyed by path
+     */
+    private Map<String, Future<String>> fetchLicenseFiles(
+            final String projectId, IdentifiedFilesIndex identifiedFiles,
+            Collection<String> componentKeys, ExecutorService executor) {
+        Map<String, Future<String>> licenseFileTexts = new HashMap<String, Future<String>>();
+
+        for (final String path : identifiedFiles.getAllLicenseFilePaths()) {
+            if (Collections.disjoint(identifiedFiles.getComponentsForPath(path),
+                    componentKeys)) {
+                continue;
             }
+            licenseFileTexts.put(path, executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return dataSource.getFileText(projectId, path);
+                }
+            }));
         }
 
-        return componentMappings;
+        log.info("Fetching " + licenseFileTexts.size() + " license files");
+        return licenseFileTexts;
     }
 
     /**
-     * @return
+     * Adds the fetched license files to the component owning them. Only
+     * components that carry file paths get license files.
+     * 
+     * @param nameVersionPair
+     * @param model
+     * @param identifiedFiles
+     * @param licenseFileTexts
+     * @return Whether every license file of the component could be fetched
+     * @throws Exception
      */
-    private Map<String, StringSearchPattern> buildPatternMap() {
-        Map<String, StringSearchPattern> patternMap = new HashMap<>();
+    private boolean attachLicenseFiles(String nameVersionPair,
+            ComponentModel model, IdentifiedFilesIndex identifiedFiles,
+            Map<String, Future<String>> licenseFileTexts) throws Exception {
+        if (model.getPaths() == null) {
+            log.info("No paths for component: " + model.getNameAndVersion());
+            return true;
+        }
 
-        for (String copyright : nrtConfigManager.getCopyrightPatterns()) {
-            StringSearchPattern pattern = null;
-            try {
-                pattern = protexWrapper.getInternalApiWrapper()
-                        .getPolicyApi()
-                        .getStringSearchPatternByName(copyright);
-                if (pattern != null) {
-                    patternMap.put(pattern.getStringSearchPatternId(),
-                            pattern);
+        boolean complete = true;
+        for (String licenseFilename : nrtConfigManager.getLicenseFilenames()) {
+            for (String path : identifiedFiles
+                    .getLicenseFilePaths(licenseFilename)) {
+                if (!identifiedFiles.getComponentsForPath(path).contains(
+                        nameVersionPair)) {
+                    continue;
+                }
+
+                String fileText = null;
+                try {
+                    fileText = licenseFileTexts.get(path).get();
+                } catch (ExecutionException e) {
+                    log.warn("Unable to get file content for: " + path,
+                            e.getCause());
+                    complete = false;
+                }
+                if (fileText != null) {
+                    LicenseModel licenseModel = new LicenseModel();
+                    licenseModel.setName(licenseFilename);
+                    licenseModel.setId("custom_included_+" + licenseFilename);
+                    licenseModel.setText(fileText);
+
+                    model.addNewLicense(licenseModel);
                 }
-            } catch (Exception e) {
-                log.warn("Unable to find search pattern object for user specified string: "
-                        + copyright);
             }
         }
-
-        return patternMap;
+        return complete;
     }
 
-    /*******************************************************************************
-     * Copyright (C) 2016 Black Duck Software, Inc.
-     * http://www.blackducksoftware.com/
+    /**
+     * Reads the snapshot of the previous run of the project, in incremental
+     * mode.
      * 
-     * Licensed to the Apache Software Foundation (ASF) under one
-     * or more contributor license agreements. See the NOTICE file
-     * distributed with this work for additional information
-     * regarding copyright ownership. The ASF licenses this file
-     * to you under the Apache License, Version 2.0 (the
-     * "License"); you may not use this file except in compliance
-     * with the License. You may obtain a copy of the License at
+     * @param protexProject
+     * @return The snapshot, null if there is none or it cannot be used
+     */
+    private ReportSnapshot loadSnapshot(ProtexProject protexProject) {
+        File snapshotFile = getSnapshotFile(protexProject);
+        if (snapshotFile == null) {
+            return null;
+        }
+
+        try {
+            ReportSnapshot snapshot = ReportSnapshot.load(snapshotFile);
+            if (snapshot == null) {
+                log.info("No previous snapshot, all components will be enriched");
+            } else if (!getSettingsFingerprint().equals(
+                    snapshot.getSettingsFingerprint())) {
+                log.info("Settings changed since the previous snapshot, all components will be enriched");
+                snapshot = null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("Unable to read snapshot, all components will be enriched", e);
+            return null;
+        }
+    }
+
+    private void saveSnapshot(ProtexProject protexProject,
+            ReportSnapshot snapshot) {
+        File snapshotFile = getSnapshotFile(protexProject);
+        if (snapshotFile == null) {
+            return;
+        }
+
+        try {
+            snapshot.save(snapshotFile);
+            log.info("Saved snapshot of " + snapshot.getComponentCount()
+                    + " components: " + snapshotFile);
+        } catch (IOException e) {
+            log.warn("Unable to save snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * @param protexProject
+     * @return The snapshot file of the project, null unless incremental mode
+     *         is enabled
+     */
+    private File getSnapshotFile(ProtexProject protexProject) {
+        if (nrtConfigManager.getSnapshotLocation() == null) {
+            return null;
+        }
+        String fileName = protexProject.getProjectId().replaceAll(
+                "[^A-Za-z0-9_.-]", "_")
+                + NRTConstants.SNAPSHOT_EXTENSION;
+        return new File(nrtConfigManager.getSnapshotLocation(), fileName);
+    }
+
+    /**
+     * Fingerprint of the settings that shape what gets collected for a
+     * component.
      * 
-     * http://www.apache.org/licenses/LICENSE-2.0
+     * @return
+     */
+    private String getSettingsFingerprint() {
+        ContentDigest digest = new ContentDigest();
+        digest.update(String.valueOf(nrtConfigManager.isShowFilePaths()));
+        digest.update(String.valueOf(nrtConfigManager.isShowCopyrights()));
+        digest.update(String.valueOf(nrtConfigManager
+                .getCopyrightContextLength()));
+        digest.update(String.valueOf(nrtConfigManager.getCopyrightPatterns()));
+        digest.update(String.valueOf(nrtConfigManager.isCopyrightCollapse()));
+        digest.update(String.valueOf(nrtConfigManager
+                .getCopyrightCollapseSimilarity()));
+        digest.update(String.valueOf(nrtConfigManager
+                .isIncludeLicenseFilenamesInReport()));
+        digest.update(String.valueOf(nrtConfigManager.getLicenseFilenames()));
+        return digest.toHex();
+    }
+
+    /**
+     * Fingerprint of the data a component is enriched from: its identity,
+     * licenses and identified paths.
      * 
-     * Unless required by applicable law or agreed to in writing,
-     * software distributed under the License is distributed on an
-     * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
-     * KIND, either express or implied. See the License for the
-     * specific language governing permissions and limitations
-     * under the License.
+     * @param protexComp
+     * @param paths
+     * @return
+     */
+    private String getComponentFingerprint(ComponentModel protexComp,
+            PathSet paths) {
+        ContentDigest digest = new ContentDigest();
+        digest.update(protexComp.getComponentId());
+        digest.update(protexComp.getName());
+        digest.update(protexComp.getVersion());
+        digest.update(protexComp.getHomePage());
+
+        if (protexComp.getLicenseModels() != null) {
+            for (LicenseModel license : protexComp.getLicenseModels()) {
+                digest.update(license.getId());
+                digest.update(license.getName());
+                digest.update(license.getText());
+            }
+        }
+
+        // Iterated in sorted order
+        for (String path : paths) {
+            digest.update(path);
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * Builds the name:version key used by the identified files report
      * 
-     *******************************************************************************/
-    private void getCopyrightsForComponent(String projectId,
-            ComponentModel componentModel, Map<String, StringSearchPattern> patternMap) {
-        if (nrtConfigManager.isShowCopyrights()
-                && nrtConfigManager.isShowFilePaths()) {
-            log.info("Getting Copyright Info for component: "
-                    + componentModel.getNameAndVersion());
+     * @param protexComp
+     * @return
+     */
+    private String getNameVersionPair(ComponentModel protexComp) {
+        String versionName = protexComp.getVersion();
+        if (versionName == null) {
+            versionName = NRTConstants.DEFAULT_VERSION;
+        }
+        return protexComp.getName() + ":" + versionName;
+    }
 
-            try {
-                List<CodeTreeNode> treeNodes = new ArrayList<CodeTreeNode>();
-                for (String path : componentModel.getPaths()) {
-                    CodeTreeNode node = new CodeTreeNode();
-                    node.setName(path);
-                    node.setNodeType(CodeTreeNodeType.FILE);
-                    treeNodes.add(node);
-                }
+    /**
+     * Loads file paths and copyrights for a single component. Each
+     * task only touches its own component model, so tasks can safely run
+     * side by side.
+     */
+    private class ComponentEnrichmentTask implements Callable<ComponentModel> {
 
-                List<StringSearchPatternOriginType> patternTypes = new ArrayList<StringSearchPatternOriginType>();
-
-                patternTypes.add(StringSearchPatternOriginType.CUSTOM);
-                patternTypes.add(StringSearchPatternOriginType.STANDARD);
-                patternTypes.add(StringSearchPatternOriginType.PROJECT_LOCAL);
-
-                List<StringSearchDiscovery> searchDiscoveries = protexWrapper
-                        .getInternalApiWrapper()
-                        .getDiscoveryApi()
-                        .getStringSearchDiscoveries(projectId, treeNodes,
-                                patternTypes);
-
-                log.debug("Found search discovery count: "
-                        + searchDiscoveries.size());
-
-                for (StringSearchDiscovery searchDiscovery : searchDiscoveries) {
-                    Integer contextLength = nrtConfigManager
-                            .getCopyrightContextLength();
-                    log.debug("Context length: " + contextLength);
-
-                    StringSearchDiscoveryWithMatches discoveryMatch = protexWrapper
-                            .getInternalApiWrapper()
-                            .getDiscoveryApi()
-                            .getStringSearchMatches(projectId, searchDiscovery,
-                                    contextLength);
-
-                    StringSearchPattern userSpecifiedPattern = patternMap
-                            .get(discoveryMatch.getStringSearchId());
-                    if (userSpecifiedPattern != null) {
-                        log.debug("Found search match for discovery: "
-                                + searchDiscovery.getStringSearchId());
-                        List<StringSearchMatch> matches = discoveryMatch
-                                .getMatches();
-                        log.debug("Found matches for discovery: "
-                                + matches.size());
-                        for (StringSearchMatch match : matches) {
-                            String foundMatch = new String(match.getContext());
-                            componentModel.addNewCopyright(foundMatch);
-
-                        }
-                    }
+        private final String nameVersionPair;
 
-                }
+        private final String fingerprint;
+
+        private final ComponentModel protexComp;
+
+        private final PathSet paths;
+
+        private final ProtexCopyrightCollector copyrightCollector;
+
+        private volatile boolean complete = false;
+
+        private ComponentEnrichmentTask(String nameVersionPair,
+                String fingerprint, ComponentModel protexComp, PathSet paths,
+                ProtexCopyrightCollector copyrightCollector) {
+            this.nameVersionPair = nameVersionPair;
+            this.fingerprint = fingerprint;
+            this.protexComp = protexComp;
+            this.paths = paths;
+            this.copyrightCollector = copyrightCollector;
+        }
+
+        @Override
+        public ComponentModel call() {
+            try {
+                // Load all the file paths
+                getFilesPathsForComponent(protexComp, paths);
+
+                // Load all the copyrights
+                complete = copyrightCollector.collectCopyrights(
+                        nameVersionPair, protexComp);
 
             } catch (Exception e) {
-                log.error("Unable to get search pattern information: "
-                        + e.getMessage());
+                log.warn("Unable to get component information for id: "
+                        + nameVersionPair);
+            }
+
+            return protexComp;
+        }
+
+        /**
+         * @return Whether the component was enriched without errors, only
+         *         valid once the task has run
+         */
+        private boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Resolves the user specified copyright pattern names into patterns keyed
+     * by pattern id. Resolved patterns are cached on the processor so that
+     * every project processed by it shares the lookups.
+     * 
+     * @return
+     */
+    private Map<String, StringSearchPattern> buildPatternMap() {
+        Map<String, StringSearchPattern> patternMap = new HashMap<>();
+
+        for (String copyright : nrtConfigManager.getCopyrightPatterns()) {
+            StringSearchPattern pattern = resolvedPatterns.get(copyright);
+            if (pattern == null) {
+                try {
+                    pattern = dataSource
+                            .getStringSearchPatternByName(copyright);
+                    if (pattern != null) {
+                        resolvedPatterns.put(copyright, pattern);
+                    }
+                } catch (Exception e) {
+                    log.warn("Unable to find search pattern object for user specified string: "
+                            + copyright);
+                }
             }
+            if (pattern != null) {
+                patternMap.put(pattern.getStringSearchPatternId(),
+                        pattern);
+            }
+        }
 
+        if (patternMap.isEmpty() && nrtConfigManager.isShowCopyrights()) {
+            log.info("No copyright patterns resolved, copyrights will not be collected");
         }
 
+        return patternMap;
     }
 
     /**
@@ -278,7 +660,7 @@ public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
      * @param componentModel
      * @param componentToPathMappings
      */
-    private void getFilesPathsForComponent(ComponentModel componentModel, Set<String> paths) {
+    private void getFilesPathsForComponent(ComponentModel componentModel, PathSet paths) {
         // Filepaths if necessary
         if (nrtConfigManager.isShowFilePaths()) {
             log.debug("Gathering file paths for component: "
@@ -290,9 +672,8 @@ public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
             }
 
             try {
-                for (String path : paths) {
-                    componentModel.addNewPath(path);
-                }
+                // Shares the path store of the identified files
+                componentModel.addNewPaths(paths);
 
             } catch (Exception e) {
                 log.error("Error getting file paths for: "
@@ -304,88 +685,31 @@ public class ProtexNoticeReportProcessor implements INoticeReportProcessor {
 
     }
 
-    private void getLicensesForComponent(String projectId, ComponentModel componentModel) {
-
-        List<ProtexLicensePojo> licensePojos = componentModel.getLicenses();
-        if (licensePojos != null)
-        {
-            for (ProtexLicensePojo license : licensePojos)
-            {
-                // License information
-                LicenseModel licenseModel = new LicenseModel();
-
-                licenseModel.setId(license.getId());
-                licenseModel.setName(license.getName());
-                licenseModel.setText(license.getLicenseText());
-
-                componentModel.addNewLicense(licenseModel);
-
-            }
-        }
-        else
-        {
-            log.warn("No license information available for: " + componentModel.getNameAndVersion());
-        }
-    }
-
-    private String getFileText(String projectId, String path) {
-        String fileText = null;
-
-        log.info("hit with license name found for file " + path);
-
-        try {
-            // reading the uploaded content of the file from the
-            // database
-            fileText = new String(protexWrapper.getInternalApiWrapper()
-                    .getCodeTreeApi()
-                    .getFileContent(projectId, path, CharEncoding.NONE));
-
-        } catch (SdkFault e) {
-            log.warn(
-                    path
-                            + " needs to be re-configured as File Upload type and project re-scanned in order to process by this tool.",
-                    e);
-        }
-
-        return fileText;
-
-    }
-
     /**
-     * This is currently the fastest way to get identified files per component
-     * The SDK currently does not expose any faster way to get Paths per
-     * component.
+     * Indexes the identified files of the project by component and path
      * 
-     * @param pojo
+     * @param projectId
      * @return
      * @throws Exception
      */
-    private HashMap<String, Set<String>> getMappings(ProjectPojo pojo)
+    private IdentifiedFilesIndex getMappings(String projectId)
             throws Exception {
-        HashMap<String, Set<String>> componentToPathMapping = new HashMap<String, Set<String>>();
-
-        ReportUtils reportUtils = new ReportUtils();
-
-        List<IDFilesElement> idElements =
-                reportUtils.getReportSection(protexWrapper, pojo, ReportSectionType.IDENTIFIED_FILES.toString(), Format.CSV, IDFilesElement.class);
+        List<String> licenseFilenames = Collections.emptyList();
+        if (nrtConfigManager.isIncludeLicenseFilenamesInReport()) {
+            licenseFilenames = nrtConfigManager.getLicenseFilenames();
+        }
+        IdentifiedFilesIndex identifiedFiles = new IdentifiedFilesIndex(
+                licenseFilenames);
 
-        log.info("Parsing identified files...");
-        for (IDFilesElement idElement : idElements) {
-            String compName = idElement.getValue("Component");
-            String compVersion = idElement.getValue("Version");
-            String path = idElement.getValue("File/Folder");
-            // Key must be more than component name, as the name is not guaranteed unique.
-            String key = compName + ":" + compVersion;
+        dataSource.readIdentifiedFiles(projectId, identifiedFiles);
 
-            Set<String> paths = componentToPathMapping.get(key);
-            if (paths == null) {
-                paths = new HashSet<String>();
-                componentToPathMapping.put(key, paths);
-            }
-            paths.add(path);
-        }
+        log.info("Parsed " + identifiedFiles.getPathCount()
+                + " identified paths for "
+                + identifiedFiles.getComponentCount() + " components ("
+                + identifiedFiles.getPathStore().getSegmentCount()
+                + " distinct path segments)");
 
-        return componentToPathMapping;
+        return identifiedFiles;
     }
 
 }
@@ -60,9 +60,15 @@ public class NRTConfigurationManager extends ConfigurationManager {
     // Switches
     private Boolean textFileOutput;
 
+    private Boolean noticeFileOutput;
+
     private Boolean htmlFileOutput; // In case user does not want the HTML
 
     // output.
+    private Boolean htmlJsonCompact;
+
+    private Integer htmlShardSize;
+
     private Boolean showFilePaths;
 
     private Boolean showComponentVersion;
@@ -74,6 +80,53 @@ public class NRTConfigurationManager extends ConfigurationManager {
     // Modifiers
     private Integer copyrightContextLength = null;
 
+    private Boolean copyrightCollapse = false;
+
+    private Integer copyrightCollapseSimilarity = null;
+
+    // Performance
+    private Integer enrichmentThreads = null;
+
+    private Integer copyrightDiscoveryBatchSize = null;
+
+    private Integer copyrightMatchMaxInFlight = null;
+
+    private Integer batchThreads = null;
+
+    private Integer textFileThreads = null;
+
+    // Protex call guards
+    private Integer protexCallTimeoutSeconds = null;
+
+    private Integer protexCallRetries = null;
+
+    private Integer protexCallBackoffMs = null;
+
+    private Boolean protexCallHedge = false;
+
+    private Integer protexCallHedgeMinDelayMs = null;
+
+    private Integer protexCallMaxThreads = null;
+
+    // Record/replay
+    private String protexRecordLocation = null;
+
+    private String protexReplayLocation = null;
+
+    private Integer protexReplayLatencyMs = null;
+
+    private Integer protexReplayJitterMs = null;
+
+    // Cache
+    private String cacheLocation = null;
+
+    private Integer cacheMaxSizeMb = null;
+
+    private Boolean cacheInvalidate = false;
+
+    // Incremental mode
+    private String snapshotLocation = null;
+
     // Custom attributes
     private List<CustomAttributeRule> customAttributes = new ArrayList<CustomAttributeRule>();
 
@@ -125,8 +178,14 @@ public class NRTConfigurationManager extends ConfigurationManager {
         // Switches
         setHtmlFileOutput(getOptionalProperty(
                 NRTConstants.PROPERTY_HTML_FILE_OUTPUT, true, Boolean.class));
+        setHtmlJsonCompact(getOptionalProperty(
+                NRTConstants.PROPERTY_HTML_JSON_COMPACT, false, Boolean.class));
+        setHtmlShardSize(getOptionalProperty(
+                NRTConstants.PROPERTY_HTML_SHARD_SIZE, 0, Integer.class));
         setTextFileOutput(getOptionalProperty(
                 NRTConstants.PROPERTY_TEXT_FILE_OUTPUT, false, Boolean.class));
+        setNoticeFileOutput(getOptionalProperty(
+                NRTConstants.PROPERTY_NOTICE_FILE_OUTPUT, false, Boolean.class));
         setIncludeLicenseFilenamesInReport(getOptionalProperty(
                 NRTConstants.PROPERTY_INC_LIC_FILENAMES, true, Boolean.class));
         setShowFilePaths(getOptionalProperty(
@@ -140,6 +199,75 @@ public class NRTConfigurationManager extends ConfigurationManager {
         setCopyrightContextLength(getOptionalProperty(
                 NRTConstants.PROPERTY_COPYRIGHT_CONTEXT_LENGTH, 100,
                 Integer.class));
+        setCopyrightCollapse(getOptionalProperty(
+                NRTConstants.PROPERTY_COPYRIGHT_COLLAPSE, false, Boolean.class));
+        setCopyrightCollapseSimilarity(getOptionalProperty(
+                NRTConstants.PROPERTY_COPYRIGHT_COLLAPSE_SIMILARITY,
+                NRTConstants.DEFAULT_COPYRIGHT_COLLAPSE_SIMILARITY,
+                Integer.class));
+
+        // Performance
+        setEnrichmentThreads(getOptionalProperty(
+                NRTConstants.PROPERTY_ENRICHMENT_THREADS,
+                NRTConstants.DEFAULT_ENRICHMENT_THREADS, Integer.class));
+        setCopyrightDiscoveryBatchSize(getOptionalProperty(
+                NRTConstants.PROPERTY_COPYRIGHT_DISCOVERY_BATCH_SIZE, 0,
+                Integer.class));
+        setCopyrightMatchMaxInFlight(getOptionalProperty(
+                NRTConstants.PROPERTY_COPYRIGHT_MATCH_MAX_IN_FLIGHT,
+                NRTConstants.DEFAULT_COPYRIGHT_MATCH_MAX_IN_FLIGHT,
+                Integer.class));
+        setBatchThreads(getOptionalProperty(
+                NRTConstants.PROPERTY_BATCH_THREADS,
+                NRTConstants.DEFAULT_BATCH_THREADS, Integer.class));
+        setTextFileThreads(getOptionalProperty(
+                NRTConstants.PROPERTY_TEXT_FILE_THREADS,
+                NRTConstants.DEFAULT_TEXT_FILE_THREADS, Integer.class));
+
+        // Protex call guards
+        setProtexCallTimeoutSeconds(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_TIMEOUT_SECONDS,
+                NRTConstants.DEFAULT_PROTEX_CALL_TIMEOUT_SECONDS,
+                Integer.class));
+        setProtexCallRetries(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_RETRIES,
+                NRTConstants.DEFAULT_PROTEX_CALL_RETRIES, Integer.class));
+        setProtexCallBackoffMs(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_BACKOFF_MS,
+                NRTConstants.DEFAULT_PROTEX_CALL_BACKOFF_MS, Integer.class));
+        setProtexCallHedge(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_HEDGE, false, Boolean.class));
+        setProtexCallHedgeMinDelayMs(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_HEDGE_MIN_DELAY_MS,
+                NRTConstants.DEFAULT_PROTEX_CALL_HEDGE_MIN_DELAY_MS,
+                Integer.class));
+        setProtexCallMaxThreads(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_CALL_MAX_THREADS,
+                NRTConstants.DEFAULT_PROTEX_CALL_MAX_THREADS, Integer.class));
+
+        // Record/replay
+        setProtexRecordLocation(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_RECORD_LOCATION, "", String.class));
+        setProtexReplayLocation(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_REPLAY_LOCATION, "", String.class));
+        setProtexReplayLatencyMs(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_REPLAY_LATENCY_MS, 0,
+                Integer.class));
+        setProtexReplayJitterMs(getOptionalProperty(
+                NRTConstants.PROPERTY_PROTEX_REPLAY_JITTER_MS, 0, Integer.class));
+
+        // Cache
+        setCacheLocation(getOptionalProperty(
+                NRTConstants.PROPERTY_CACHE_LOCATION, "", String.class));
+        setCacheMaxSizeMb(getOptionalProperty(
+                NRTConstants.PROPERTY_CACHE_MAX_SIZE_MB,
+                NRTConstants.DEFAULT_CACHE_MAX_SIZE_MB, Integer.class));
+        setCacheInvalidate(getOptionalProperty(
+                NRTConstants.PROPERTY_CACHE_INVALIDATE, false, Boolean.class));
+
+        // Incremental mode
+        setSnapshotLocation(getOptionalProperty(
+                NRTConstants.PROPERTY_SNAPSHOT_LOCATION, "", String.class));
 
         // Custom attributes
         populateAttributes();
@@ -302,6 +430,14 @@ public class NRTConfigurationManager extends ConfigurationManager {
         this.textFileOutput = textFileOutput;
     }
 
+    public Boolean isNoticeFileOutput() {
+        return noticeFileOutput;
+    }
+
+    public void setNoticeFileOutput(Boolean noticeFileOutput) {
+        this.noticeFileOutput = noticeFileOutput;
+    }
+
     public List<CustomAttributeRule> getCustomAttributeRules(ATTRIBUTE_TYPE type) {
         List<CustomAttributeRule> attributes = new ArrayList<CustomAttributeRule>();
 
@@ -323,6 +459,371 @@ public class NRTConfigurationManager extends ConfigurationManager {
         this.copyrightContextLength = copyrightContextLength;
     }
 
+    /**
+     * Whether copyrights differing only in whitespace, years or part of their
+     * context are collapsed into one.
+     * 
+     * @return
+     */
+    public Boolean isCopyrightCollapse() {
+        return copyrightCollapse;
+    }
+
+    public void setCopyrightCollapse(Boolean copyrightCollapse) {
+        this.copyrightCollapse = copyrightCollapse;
+    }
+
+    /**
+     * Percentage of their word sequences two copyrights of the same holder
+     * must share to be collapsed.
+     * 
+     * @return
+     */
+    public Integer getCopyrightCollapseSimilarity() {
+        return copyrightCollapseSimilarity;
+    }
+
+    public void setCopyrightCollapseSimilarity(
+            Integer copyrightCollapseSimilarity) {
+        if (copyrightCollapseSimilarity == null
+                || copyrightCollapseSimilarity < 1
+                || copyrightCollapseSimilarity > 100) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_COPYRIGHT_COLLAPSE_SIMILARITY
+                    + ": " + copyrightCollapseSimilarity + ", defaulting to "
+                    + NRTConstants.DEFAULT_COPYRIGHT_COLLAPSE_SIMILARITY);
+            copyrightCollapseSimilarity = NRTConstants.DEFAULT_COPYRIGHT_COLLAPSE_SIMILARITY;
+        }
+        this.copyrightCollapseSimilarity = copyrightCollapseSimilarity;
+    }
+
+    /**
+     * Number of worker threads used to enrich components (licenses, paths and
+     * copyrights) concurrently. Never less than one.
+     * 
+     * @return
+     */
+    public Integer getEnrichmentThreads() {
+        return enrichmentThreads;
+    }
+
+    public void setEnrichmentThreads(Integer enrichmentThreads) {
+        if (enrichmentThreads == null || enrichmentThreads < 1) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_ENRICHMENT_THREADS + ": "
+                    + enrichmentThreads + ", defaulting to 1");
+            enrichmentThreads = 1;
+        }
+        this.enrichmentThreads = enrichmentThreads;
+    }
+
+    /**
+     * Number of paths per project-wide string search discovery request. Zero
+     * means discoveries are requested once per component.
+     * 
+     * @return
+     */
+    public Integer getCopyrightDiscoveryBatchSize() {
+        return copyrightDiscoveryBatchSize;
+    }
+
+    public void setCopyrightDiscoveryBatchSize(
+            Integer copyrightDiscoveryBatchSize) {
+        if (copyrightDiscoveryBatchSize == null
+                || copyrightDiscoveryBatchSize < 0) {
+            copyrightDiscoveryBatchSize = 0;
+        }
+        this.copyrightDiscoveryBatchSize = copyrightDiscoveryBatchSize;
+    }
+
+    /**
+     * Maximum number of string search match requests in flight at once,
+     * across all components. Never less than one.
+     * 
+     * @return
+     */
+    public Integer getCopyrightMatchMaxInFlight() {
+        return copyrightMatchMaxInFlight;
+    }
+
+    public void setCopyrightMatchMaxInFlight(Integer copyrightMatchMaxInFlight) {
+        if (copyrightMatchMaxInFlight == null || copyrightMatchMaxInFlight < 1) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_COPYRIGHT_MATCH_MAX_IN_FLIGHT
+                    + ": " + copyrightMatchMaxInFlight + ", defaulting to 1");
+            copyrightMatchMaxInFlight = 1;
+        }
+        this.copyrightMatchMaxInFlight = copyrightMatchMaxInFlight;
+    }
+
+    /**
+     * Number of projects processed concurrently in batch mode. Never less
+     * than one.
+     * 
+     * @return
+     */
+    public Integer getBatchThreads() {
+        return batchThreads;
+    }
+
+    public void setBatchThreads(Integer batchThreads) {
+        if (batchThreads == null || batchThreads < 1) {
+            log.warn("Invalid value for " + NRTConstants.PROPERTY_BATCH_THREADS
+                    + ": " + batchThreads + ", defaulting to 1");
+            batchThreads = 1;
+        }
+        this.batchThreads = batchThreads;
+    }
+
+    /**
+     * Number of component text files written concurrently. Never less than
+     * one.
+     * 
+     * @return
+     */
+    public Integer getTextFileThreads() {
+        return textFileThreads;
+    }
+
+    public void setTextFileThreads(Integer textFileThreads) {
+        if (textFileThreads == null || textFileThreads < 1) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_TEXT_FILE_THREADS + ": "
+                    + textFileThreads + ", defaulting to 1");
+            textFileThreads = 1;
+        }
+        this.textFileThreads = textFileThreads;
+    }
+
+    /**
+     * Deadline of a single Protex call about one item (a project, a file, a
+     * pattern or its matches) in seconds, 0 if calls may take forever. Bulk
+     * calls for a whole project never have a deadline.
+     * 
+     * @return
+     */
+    public Integer getProtexCallTimeoutSeconds() {
+        return protexCallTimeoutSeconds;
+    }
+
+    public void setProtexCallTimeoutSeconds(Integer protexCallTimeoutSeconds) {
+        if (protexCallTimeoutSeconds == null || protexCallTimeoutSeconds < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_CALL_TIMEOUT_SECONDS + ": "
+                    + protexCallTimeoutSeconds + ", defaulting to 0 (no deadline)");
+            protexCallTimeoutSeconds = 0;
+        }
+        this.protexCallTimeoutSeconds = protexCallTimeoutSeconds;
+    }
+
+    public Integer getProtexCallRetries() {
+        return protexCallRetries;
+    }
+
+    public void setProtexCallRetries(Integer protexCallRetries) {
+        if (protexCallRetries == null || protexCallRetries < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_CALL_RETRIES + ": "
+                    + protexCallRetries + ", defaulting to 0");
+            protexCallRetries = 0;
+        }
+        this.protexCallRetries = protexCallRetries;
+    }
+
+    /**
+     * Wait before the first retry of a Protex call, doubled for every further
+     * retry.
+     * 
+     * @return
+     */
+    public Integer getProtexCallBackoffMs() {
+        return protexCallBackoffMs;
+    }
+
+    public void setProtexCallBackoffMs(Integer protexCallBackoffMs) {
+        if (protexCallBackoffMs == null || protexCallBackoffMs < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_CALL_BACKOFF_MS + ": "
+                    + protexCallBackoffMs + ", defaulting to 0");
+            protexCallBackoffMs = 0;
+        }
+        this.protexCallBackoffMs = protexCallBackoffMs;
+    }
+
+    /**
+     * Whether a duplicate request is sent when a Protex call is slower than
+     * 95% of its recent calls.
+     * 
+     * @return
+     */
+    public Boolean isProtexCallHedge() {
+        return protexCallHedge;
+    }
+
+    public void setProtexCallHedge(Boolean protexCallHedge) {
+        this.protexCallHedge = protexCallHedge;
+    }
+
+    public Integer getProtexCallHedgeMinDelayMs() {
+        return protexCallHedgeMinDelayMs;
+    }
+
+    public void setProtexCallHedgeMinDelayMs(Integer protexCallHedgeMinDelayMs) {
+        if (protexCallHedgeMinDelayMs == null || protexCallHedgeMinDelayMs < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_CALL_HEDGE_MIN_DELAY_MS
+                    + ": " + protexCallHedgeMinDelayMs + ", defaulting to 0");
+            protexCallHedgeMinDelayMs = 0;
+        }
+        this.protexCallHedgeMinDelayMs = protexCallHedgeMinDelayMs;
+    }
+
+    /**
+     * Most Protex calls with a deadline (or hedged) running at once,
+     * including abandoned calls that have not given up yet.
+     * 
+     * @return
+     */
+    public Integer getProtexCallMaxThreads() {
+        return protexCallMaxThreads;
+    }
+
+    public void setProtexCallMaxThreads(Integer protexCallMaxThreads) {
+        if (protexCallMaxThreads == null || protexCallMaxThreads < 1) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_CALL_MAX_THREADS + ": "
+                    + protexCallMaxThreads + ", defaulting to "
+                    + NRTConstants.DEFAULT_PROTEX_CALL_MAX_THREADS);
+            protexCallMaxThreads = NRTConstants.DEFAULT_PROTEX_CALL_MAX_THREADS;
+        }
+        this.protexCallMaxThreads = protexCallMaxThreads;
+    }
+
+    /**
+     * Directory that every Protex response is recorded to, null unless
+     * recording.
+     * 
+     * @return
+     */
+    public String getProtexRecordLocation() {
+        return protexRecordLocation;
+    }
+
+    public void setProtexRecordLocation(String protexRecordLocation) {
+        if (StringUtils.isBlank(protexRecordLocation)) {
+            protexRecordLocation = null;
+        }
+        this.protexRecordLocation = protexRecordLocation;
+    }
+
+    /**
+     * Directory of a recording served instead of the Protex server, null
+     * unless replaying.
+     * 
+     * @return
+     */
+    public String getProtexReplayLocation() {
+        return protexReplayLocation;
+    }
+
+    public void setProtexReplayLocation(String protexReplayLocation) {
+        if (StringUtils.isBlank(protexReplayLocation)) {
+            protexReplayLocation = null;
+        }
+        this.protexReplayLocation = protexReplayLocation;
+    }
+
+    public Integer getProtexReplayLatencyMs() {
+        return protexReplayLatencyMs;
+    }
+
+    public void setProtexReplayLatencyMs(Integer protexReplayLatencyMs) {
+        if (protexReplayLatencyMs == null || protexReplayLatencyMs < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_REPLAY_LATENCY_MS + ": "
+                    + protexReplayLatencyMs + ", defaulting to 0");
+            protexReplayLatencyMs = 0;
+        }
+        this.protexReplayLatencyMs = protexReplayLatencyMs;
+    }
+
+    public Integer getProtexReplayJitterMs() {
+        return protexReplayJitterMs;
+    }
+
+    public void setProtexReplayJitterMs(Integer protexReplayJitterMs) {
+        if (protexReplayJitterMs == null || protexReplayJitterMs < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_PROTEX_REPLAY_JITTER_MS + ": "
+                    + protexReplayJitterMs + ", defaulting to 0");
+            protexReplayJitterMs = 0;
+        }
+        this.protexReplayJitterMs = protexReplayJitterMs;
+    }
+
+    /**
+     * Directory of the persistent Protex response cache, null if the cache is
+     * disabled.
+     * 
+     * @return
+     */
+    public String getCacheLocation() {
+        return cacheLocation;
+    }
+
+    public void setCacheLocation(String cacheLocation) {
+        if (StringUtils.isBlank(cacheLocation)) {
+            cacheLocation = null;
+        }
+        this.cacheLocation = cacheLocation;
+    }
+
+    public Integer getCacheMaxSizeMb() {
+        return cacheMaxSizeMb;
+    }
+
+    public void setCacheMaxSizeMb(Integer cacheMaxSizeMb) {
+        if (cacheMaxSizeMb == null || cacheMaxSizeMb < 1) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_CACHE_MAX_SIZE_MB + ": "
+                    + cacheMaxSizeMb + ", defaulting to "
+                    + NRTConstants.DEFAULT_CACHE_MAX_SIZE_MB);
+            cacheMaxSizeMb = NRTConstants.DEFAULT_CACHE_MAX_SIZE_MB;
+        }
+        this.cacheMaxSizeMb = cacheMaxSizeMb;
+    }
+
+    /**
+     * Whether the cached responses of the project are thrown away before the
+     * run, regardless of the scan state.
+     * 
+     * @return
+     */
+    public Boolean isCacheInvalidate() {
+        return cacheInvalidate;
+    }
+
+    public void setCacheInvalidate(Boolean cacheInvalidate) {
+        this.cacheInvalidate = cacheInvalidate;
+    }
+
+    /**
+     * Directory holding the snapshots of previous runs, null unless
+     * incremental mode is enabled.
+     * 
+     * @return
+     */
+    public String getSnapshotLocation() {
+        return snapshotLocation;
+    }
+
+    public void setSnapshotLocation(String snapshotLocation) {
+        if (StringUtils.isBlank(snapshotLocation)) {
+            snapshotLocation = null;
+        }
+        this.snapshotLocation = snapshotLocation;
+    }
+
     public Boolean isHtmlFileOutput() {
         return htmlFileOutput;
     }
@@ -331,6 +832,34 @@ public class NRTConfigurationManager extends ConfigurationManager {
         this.htmlFileOutput = htmlFileOutput;
     }
 
+    public Boolean isHtmlJsonCompact() {
+        return htmlJsonCompact;
+    }
+
+    public void setHtmlJsonCompact(Boolean htmlJsonCompact) {
+        this.htmlJsonCompact = htmlJsonCompact;
+    }
+
+    /**
+     * Number of components per data file of a sharded HTML report. Zero means
+     * the report is a single page holding all components.
+     * 
+     * @return
+     */
+    public Integer getHtmlShardSize() {
+        return htmlShardSize;
+    }
+
+    public void setHtmlShardSize(Integer htmlShardSize) {
+        if (htmlShardSize == null || htmlShardSize < 0) {
+            log.warn("Invalid value for "
+                    + NRTConstants.PROPERTY_HTML_SHARD_SIZE + ": "
+                    + htmlShardSize + ", defaulting to 0");
+            htmlShardSize = 0;
+        }
+        this.htmlShardSize = htmlShardSize;
+    }
+
     public String getOutputFileLocation() {
         return outputFileLocation;
     }
@@ -30,9 +30,19 @@ public class NRTConstants {
 
     public static final String CL_PROJECT_NAME = "project";
 
+    public static final String CL_INVALIDATE_CACHE = "invalidateCache";
+
+    public static final String CL_PROJECT_NAMES = "projects";
+
     //
     public static final String HTML_TEMPLATE_FILE = "html_template.html";
 
+    // Index page of a sharded report, the components are loaded on demand
+    public static final String HTML_SHARDED_TEMPLATE_FILE = "html_template_sharded.html";
+
+    // Renders the components, inlined into the templates that refer to it
+    public static final String HTML_RENDERING_SCRIPT_FILE = "report_rendering.js";
+
     // // Properties
     // CC
     public static final String CC_APPLICATION_NAME = "cc.application.name";
@@ -61,6 +71,8 @@ public class NRTConstants {
     // Report extensions
     public static final String REPORT_HTML_EXTENSION = ".html";
 
+    public static final String REPORT_NOTICE_EXTENSION = "_NOTICE.txt";
+
     public static final String REPORT_PLAIN_TEXT_EXTENSION = ".txt";
 
     // Names
@@ -76,12 +88,95 @@ public class NRTConstants {
 
     public static final String PROPERTY_COPYRIGHT_CONTEXT_LENGTH = "copyright.context.length";
 
+    // Collapsing of near duplicate copyrights, similarity in percent
+    public static final String PROPERTY_COPYRIGHT_COLLAPSE = "copyright.collapse";
+
+    public static final String PROPERTY_COPYRIGHT_COLLAPSE_SIMILARITY = "copyright.collapse.similarity";
+
+    public static final int DEFAULT_COPYRIGHT_COLLAPSE_SIMILARITY = 80;
+
     public static final String PROPERTY_INC_LIC_FILENAMES = "include.license.filenames.in.report";
 
     public static final String PROPERTY_TEXT_FILE_OUTPUT = "text.file.output";
 
+    public static final String PROPERTY_NOTICE_FILE_OUTPUT = "notice.file.output";
+
     public static final String PROPERTY_HTML_FILE_OUTPUT = "html.file.output";
 
+    public static final String PROPERTY_HTML_JSON_COMPACT = "html.json.compact";
+
+    // Zero writes all components into the report page itself
+    public static final String PROPERTY_HTML_SHARD_SIZE = "html.shard.size";
+
+    // Performance
+    public static final String PROPERTY_ENRICHMENT_THREADS = "enrichment.threads";
+
+    public static final int DEFAULT_ENRICHMENT_THREADS = 4;
+
+    // Zero disables batch mode, discoveries are then fetched per component
+    public static final String PROPERTY_COPYRIGHT_DISCOVERY_BATCH_SIZE = "copyright.discovery.batch.size";
+
+    public static final String PROPERTY_COPYRIGHT_MATCH_MAX_IN_FLIGHT = "copyright.match.max.in.flight";
+
+    public static final int DEFAULT_COPYRIGHT_MATCH_MAX_IN_FLIGHT = 8;
+
+    // Number of projects processed at once in batch mode
+    public static final String PROPERTY_BATCH_THREADS = "batch.threads";
+
+    public static final int DEFAULT_BATCH_THREADS = 2;
+
+    // Number of component text files written at once
+    public static final String PROPERTY_TEXT_FILE_THREADS = "text.file.threads";
+
+    public static final int DEFAULT_TEXT_FILE_THREADS = 4;
+
+    // Guards around Protex calls, a timeout of 0 disables the deadline of the
+    // calls about a single item
+    public static final String PROPERTY_PROTEX_CALL_TIMEOUT_SECONDS = "protex.call.timeout.seconds";
+
+    public static final int DEFAULT_PROTEX_CALL_TIMEOUT_SECONDS = 300;
+
+    public static final String PROPERTY_PROTEX_CALL_RETRIES = "protex.call.retries";
+
+    public static final int DEFAULT_PROTEX_CALL_RETRIES = 2;
+
+    public static final String PROPERTY_PROTEX_CALL_BACKOFF_MS = "protex.call.backoff.ms";
+
+    public static final int DEFAULT_PROTEX_CALL_BACKOFF_MS = 1000;
+
+    public static final String PROPERTY_PROTEX_CALL_HEDGE = "protex.call.hedge";
+
+    public static final String PROPERTY_PROTEX_CALL_HEDGE_MIN_DELAY_MS = "protex.call.hedge.min.delay.ms";
+
+    public static final int DEFAULT_PROTEX_CALL_HEDGE_MIN_DELAY_MS = 250;
+
+    public static final String PROPERTY_PROTEX_CALL_MAX_THREADS = "protex.call.max.threads";
+
+    public static final int DEFAULT_PROTEX_CALL_MAX_THREADS = 16;
+
+    // Record/replay, an empty location disables it
+    public static final String PROPERTY_PROTEX_RECORD_LOCATION = "protex.record.location";
+
+    public static final String PROPERTY_PROTEX_REPLAY_LOCATION = "protex.replay.location";
+
+    public static final String PROPERTY_PROTEX_REPLAY_LATENCY_MS = "protex.replay.latency.ms";
+
+    public static final String PROPERTY_PROTEX_REPLAY_JITTER_MS = "protex.replay.jitter.ms";
+
+    // Cache, an empty location disables it
+    public static final String PROPERTY_CACHE_LOCATION = "cache.location";
+
+    public static final String PROPERTY_CACHE_MAX_SIZE_MB = "cache.max.size.mb";
+
+    public static final int DEFAULT_CACHE_MAX_SIZE_MB = 1024;
+
+    public static final String PROPERTY_CACHE_INVALIDATE = "cache.invalidate";
+
+    // Incremental mode, an empty location disables it
+    public static final String PROPERTY_SNAPSHOT_LOCATION = "incremental.snapshot.location";
+
+    public static final String SNAPSHOT_EXTENSION = ".snapshot.json.gz";
+
     // / HTML
     public static final String HTML_TITLE_TOC = "Table of Contents";
 
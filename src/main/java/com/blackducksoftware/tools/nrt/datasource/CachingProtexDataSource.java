@@ -0,0 +1,510 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Keeps the responses of another data source on disk, so that re-running a
+ * report against a project that has not been rescanned does not go back to
+ * the server.
+ * 
+ * Entries live under <cache root>/<project id>/<scan state>/ where the scan
+ * state is derived from the analyzed and last modified dates of the project.
+ * Once the project is rescanned or its identifications change, the entries of
+ * the previous state are discarded. Projects without an analyzed date are not
+ * cached.
+ * 
+ * When the last modified date is unknown, identifications may change without
+ * the scan state telling, so the components and identified files of the
+ * project are always asked of the server. Only the data that depends on the
+ * scan alone is cached then.
+ * 
+ * Entries that cannot be read are treated as a miss. When the cache
+ * grows beyond its size limit, the least recently used entries are evicted.
+ * 
+ */
+public class CachingProtexDataSource implements IProtexDataSource {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    // Eviction frees space down to this share of the limit
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final IProtexDataSource delegate;
+
+    private final File cacheRoot;
+
+    private final long maxSizeBytes;
+
+    private boolean invalidate = false;
+
+    // Entry directory of every cacheable project, keyed by project id
+    private final ConcurrentMap<String, File> projectDirectories = new ConcurrentHashMap<String, File>();
+
+    // Ids of the projects whose bill of materials can be cached
+    private final Set<String> bomCacheableProjects = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // Licenses read from the cache, shared like the server data source does
+    private final ConcurrentMap<String, LicenseModel> licensesById = new ConcurrentHashMap<String, LicenseModel>();
+
+    // Null until the cache size has been measured
+    private AtomicLong cacheSize = null;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingProtexDataSource(IProtexDataSource delegate, File cacheRoot,
+            long maxSizeBytes) {
+        this.delegate = delegate;
+        this.cacheRoot = cacheRoot;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * If set, the cached entries of every project looked up are discarded
+     * before use.
+     * 
+     * @param invalidate
+     */
+    public void setInvalidate(boolean invalidate) {
+        this.invalidate = invalidate;
+    }
+
+    @Override
+    public ProtexProject getProjectByName(String projectName) throws Exception {
+        // Always asked of the server, the scan state decides what is reused
+        ProtexProject project = delegate.getProjectByName(projectName);
+        if (project != null) {
+            openProject(project);
+        }
+        return project;
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(String projectId)
+            throws Exception {
+        File entry = getBomEntry(projectId, "components");
+        ComponentsEntry cached = readEntry(entry, EntryFiles.COMPONENT_GSON,
+                ComponentsEntry.class);
+        if (cached != null) {
+            return cached.getComponents(licensesById);
+        }
+
+        List<ComponentModel> components = delegate.getComponents(projectId);
+        writeEntry(entry, EntryFiles.COMPONENT_GSON, new ComponentsEntry(
+                components), ComponentsEntry.class);
+        return components;
+    }
+
+    @Override
+    public void readIdentifiedFiles(String projectId,
+            IdentifiedFilesIndex identifiedFiles) throws Exception {
+        File entry = getBomEntry(projectId, "identified_files");
+        if (entry != null && readIdentifiedFilesEntry(entry, identifiedFiles)) {
+            return;
+        }
+
+        delegate.readIdentifiedFiles(projectId, identifiedFiles);
+        if (entry != null) {
+            writeIdentifiedFilesEntry(entry, identifiedFiles);
+        }
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(String patternName)
+            throws Exception {
+        // Not tied to a project, the processor keeps these for the run
+        return delegate.getStringSearchPatternByName(patternName);
+    }
+
+    /**
+     * Discoveries are kept per path, so that a request only asks the server
+     * about the paths that are not cached yet, no matter how the paths were
+     * batched when they were cached.
+     */
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception {
+        if (getProjectDirectory(projectId) == null) {
+            return delegate.getStringSearchDiscoveries(projectId, paths,
+                    originTypes);
+        }
+
+        Map<String, List<StringSearchDiscovery>> discoveriesByPath = new LinkedHashMap<String, List<StringSearchDiscovery>>();
+        List<String> uncachedPaths = new ArrayList<String>();
+        for (String path : paths) {
+            List<StringSearchDiscovery> pathDiscoveries = readEntry(
+                    getDiscoveryEntry(projectId, path, originTypes),
+                    EntryFiles.SDK_GSON, EntryFiles.DISCOVERIES_TYPE);
+            if (pathDiscoveries == null) {
+                uncachedPaths.add(path);
+            }
+            discoveriesByPath.put(path, pathDiscoveries);
+        }
+
+        List<StringSearchDiscovery> searchDiscoveries = new ArrayList<StringSearchDiscovery>();
+        if (!uncachedPaths.isEmpty()) {
+            Map<String, List<StringSearchDiscovery>> fetched = new HashMap<String, List<StringSearchDiscovery>>();
+            for (String path : uncachedPaths) {
+                fetched.put(path, new ArrayList<StringSearchDiscovery>());
+            }
+
+            for (StringSearchDiscovery searchDiscovery : delegate
+                    .getStringSearchDiscoveries(projectId, uncachedPaths,
+                            originTypes)) {
+                List<StringSearchDiscovery> pathDiscoveries = fetched
+                        .get(searchDiscovery.getFilePath());
+                if (pathDiscoveries == null) {
+                    // Not asked for, hand it over but do not cache it
+                    searchDiscoveries.add(searchDiscovery);
+                } else {
+                    pathDiscoveries.add(searchDiscovery);
+                }
+            }
+
+            for (Map.Entry<String, List<StringSearchDiscovery>> fetchedPath : fetched
+                    .entrySet()) {
+                writeEntry(
+                        getDiscoveryEntry(projectId, fetchedPath.getKey(),
+                                originTypes), EntryFiles.SDK_GSON,
+                        fetchedPath.getValue(), EntryFiles.DISCOVERIES_TYPE);
+                discoveriesByPath.put(fetchedPath.getKey(),
+                        fetchedPath.getValue());
+            }
+        }
+
+        for (List<StringSearchDiscovery> pathDiscoveries : discoveriesByPath
+                .values()) {
+            searchDiscoveries.addAll(pathDiscoveries);
+        }
+        return searchDiscoveries;
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength)
+            throws Exception {
+        File entry = getEntry(projectId, "matches|"
+                + searchDiscovery.getFilePath() + "|"
+                + searchDiscovery.getStringSearchId() + "|" + contextLength);
+        List<String> contexts = readEntry(entry, EntryFiles.SDK_GSON,
+                EntryFiles.MATCHES_TYPE);
+        if (contexts == null) {
+            contexts = delegate.getStringSearchMatches(projectId,
+                    searchDiscovery, contextLength);
+            writeEntry(entry, EntryFiles.SDK_GSON, contexts,
+                    EntryFiles.MATCHES_TYPE);
+        }
+        return contexts;
+    }
+
+    @Override
+    public String getFileText(String projectId, String path) throws Exception {
+        File entry = getEntry(projectId, "file|" + path);
+        String fileText = readEntry(entry, EntryFiles.SDK_GSON, String.class);
+        if (fileText == null) {
+            fileText = delegate.getFileText(projectId, path);
+            // Missing content is not cached, it may be uploaded later on
+            if (fileText != null) {
+                writeEntry(entry, EntryFiles.SDK_GSON, fileText,
+                        String.class);
+            }
+        }
+        return fileText;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Prepares the entry directory of the project for its current scan state,
+     * discarding the entries of earlier scans.
+     * 
+     * @param project
+     * @throws IOException
+     */
+    private void openProject(ProtexProject project) throws IOException {
+        File projectDirectory = new File(cacheRoot,
+                toDirectoryName(project.getProjectId()));
+
+        if (invalidate) {
+            log.info("Invalidating cached data for project: "
+                    + project.getProjectName());
+            FileUtils.deleteDirectory(projectDirectory);
+        }
+
+        if (project.getAnalyzedDate() == null) {
+            log.warn("Unable to determine the scan state of project "
+                    + project.getProjectName() + ", its data will not be cached");
+            projectDirectories.remove(project.getProjectId());
+            bomCacheableProjects.remove(project.getProjectId());
+            return;
+        }
+
+        String scanState = getScanState(project);
+        File[] scans = projectDirectory.listFiles();
+        if (scans != null) {
+            for (File scan : scans) {
+                if (!scan.getName().equals(scanState)) {
+                    log.info("Discarding cached data of a previous scan of project: "
+                            + project.getProjectName());
+                    FileUtils.deleteDirectory(scan);
+                }
+            }
+        }
+
+        File scanDirectory = new File(projectDirectory, scanState);
+        FileUtils.forceMkdir(scanDirectory);
+        projectDirectories.put(project.getProjectId(), scanDirectory);
+        if (project.getLastModifiedDate() != null) {
+            bomCacheableProjects.add(project.getProjectId());
+        } else {
+            log.info("Unable to tell when the identifications of project "
+                    + project.getProjectName()
+                    + " last changed, its bill of materials will not be cached");
+            bomCacheableProjects.remove(project.getProjectId());
+        }
+        log.info("Using cache at: " + scanDirectory.getAbsolutePath());
+    }
+
+    /**
+     * @param project
+     *            a project with an analyzed date
+     * @return The name of the entry directory of the current state of the
+     *         project
+     */
+    static String getScanState(ProtexProject project) {
+        if (project.getLastModifiedDate() == null) {
+            return EntryFiles.digest(project.getAnalyzedDate());
+        }
+        return EntryFiles.digest(project.getAnalyzedDate() + "|"
+                + project.getLastModifiedDate());
+    }
+
+    private File getProjectDirectory(String projectId) {
+        return projectDirectories.get(projectId);
+    }
+
+    /**
+     * @param projectId
+     * @param key
+     * @return The entry file for the key, null if the project is not cached
+     */
+    private File getEntry(String projectId, String key) {
+        File projectDirectory = getProjectDirectory(projectId);
+        if (projectDirectory == null) {
+            return null;
+        }
+
+        return EntryFiles.getEntryFile(projectDirectory, key);
+    }
+
+    /**
+     * @param projectId
+     * @param key
+     * @return The entry file for the key, null if the bill of materials of the
+     *         project is not cached
+     */
+    private File getBomEntry(String projectId, String key) {
+        if (!bomCacheableProjects.contains(projectId)) {
+            return null;
+        }
+
+        return getEntry(projectId, key);
+    }
+
+    private File getDiscoveryEntry(String projectId, String path,
+            List<StringSearchPatternOriginType> originTypes) {
+        return getEntry(projectId, "discoveries|" + originTypes + "|" + path);
+    }
+
+    private <T> T readEntry(File entry, Gson gson, Type type) {
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try {
+            T value = EntryFiles.readJson(entry, gson, type);
+            // Keeps track of the least recently used entries
+            entry.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return value;
+        } catch (IOException | JsonParseException e) {
+            log.warn("Discarding unreadable cache entry: " + entry, e);
+            FileUtils.deleteQuietly(entry);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void writeEntry(File entry, Gson gson, Object value, Type type) {
+        if (entry == null) {
+            return;
+        }
+
+        long previousLength = entry.length();
+        try {
+            EntryFiles.writeJson(entry, gson, value, type);
+            entryWritten(entry, previousLength);
+        } catch (IOException e) {
+            log.warn("Unable to write cache entry: " + entry, e);
+        }
+    }
+
+    /**
+     * The rows go straight into the index. An entry that turns out to be
+     * broken half way through is discarded along with the rows read from it,
+     * and treated as a miss like any other unreadable entry.
+     */
+    private boolean readIdentifiedFilesEntry(File entry,
+            IdentifiedFilesIndex identifiedFiles) {
+        if (!entry.isFile()) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        try {
+            EntryFiles.readIdentifiedFiles(entry, identifiedFiles);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable cache entry: " + entry, e);
+            FileUtils.deleteQuietly(entry);
+            identifiedFiles.clear();
+            misses.incrementAndGet();
+            return false;
+        }
+
+        entry.setLastModified(System.currentTimeMillis());
+        hits.incrementAndGet();
+        return true;
+    }
+
+    private void writeIdentifiedFilesEntry(File entry,
+            IdentifiedFilesIndex identifiedFiles) {
+        long previousLength = entry.length();
+        try {
+            EntryFiles.writeIdentifiedFiles(entry, identifiedFiles);
+            entryWritten(entry, previousLength);
+        } catch (IOException e) {
+            log.warn("Unable to write cache entry: " + entry, e);
+        }
+    }
+
+    private void entryWritten(File entry, long previousLength) {
+        if (getCacheSize().addAndGet(entry.length() - previousLength) > maxSizeBytes) {
+            evict();
+        }
+    }
+
+    private synchronized AtomicLong getCacheSize() {
+        if (cacheSize == null) {
+            cacheSize = new AtomicLong(cacheRoot.isDirectory() ? FileUtils
+                    .sizeOfDirectory(cacheRoot) : 0);
+        }
+        return cacheSize;
+    }
+
+    /**
+     * Removes the least recently used entries of all projects until the cache
+     * is comfortably below its size limit.
+     */
+    private synchronized void evict() {
+        if (cacheSize.get() <= maxSizeBytes) {
+            // Another thread got here first
+            return;
+        }
+
+        List<File> entries = new ArrayList<File>(FileUtils.listFiles(
+                cacheRoot, null, true));
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        long size = 0;
+        for (File entry : entries) {
+            lastUsed.put(entry, entry.lastModified());
+            size += entry.length();
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return lastUsed.get(first).compareTo(lastUsed.get(second));
+            }
+        });
+
+        long target = (long) (maxSizeBytes * EVICTION_TARGET);
+        int evicted = 0;
+        for (File entry : entries) {
+            if (size <= target) {
+                break;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                size -= length;
+                evicted++;
+            }
+        }
+
+        cacheSize.set(size);
+        log.info("Evicted " + evicted + " cache entries, cache size is now "
+                + size + " bytes");
+    }
+
+    private String toDirectoryName(String projectId) {
+        return projectId.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+}
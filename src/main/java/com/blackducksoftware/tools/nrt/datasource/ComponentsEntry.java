@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.google.gson.annotations.Expose;
+
+/**
+ * The cached components of a project. Every distinct license is kept once,
+ * components refer to it by its index in the entry.
+ * 
+ */
+final class ComponentsEntry {
+
+    @Expose
+    private List<LicenseModel> licenses = new ArrayList<LicenseModel>();
+
+    @Expose
+    private List<Component> components = new ArrayList<Component>();
+
+    private static class Component {
+
+        @Expose
+        private String componentId;
+
+        @Expose
+        private String name;
+
+        @Expose
+        private String version;
+
+        @Expose
+        private String homePage;
+
+        @Expose
+        private Set<String> paths;
+
+        @Expose
+        private Set<String> copyrights;
+
+        @Expose
+        private List<Integer> licenseIds;
+    }
+
+    // For deserialization
+    private ComponentsEntry() {
+    }
+
+    /**
+     * @param components
+     *            the components as the server returned them
+     */
+    ComponentsEntry(List<ComponentModel> components) {
+        // Licenses without an id are told apart by their text
+        Map<String, Integer> licenseIndexes = new HashMap<String, Integer>();
+        for (ComponentModel model : components) {
+            Component component = new Component();
+            component.componentId = model.getComponentId();
+            component.name = model.getName();
+            component.version = model.getVersion();
+            component.homePage = model.getHomePage();
+            component.paths = model.getPaths();
+            component.copyrights = model.getCopyrights();
+            if (model.getLicenseModels() != null) {
+                component.licenseIds = new ArrayList<Integer>(model
+                        .getLicenseModels().size());
+                for (LicenseModel license : model.getLicenseModels()) {
+                    String key = license.getId() + "\n"
+                            + license.getTextDigest();
+                    Integer index = licenseIndexes.get(key);
+                    if (index == null) {
+                        index = licenses.size();
+                        licenses.add(license);
+                        licenseIndexes.put(key, index);
+                    }
+                    component.licenseIds.add(index);
+                }
+            }
+            this.components.add(component);
+        }
+    }
+
+    /**
+     * @param licensesById
+     *            licenses shared by all projects, a license with an id is
+     *            replaced by the one already held for its id, just like the
+     *            server data source does
+     * @return The components, sharing their licenses
+     */
+    List<ComponentModel> getComponents(
+            ConcurrentMap<String, LicenseModel> licensesById) {
+        List<LicenseModel> sharedLicenses = new ArrayList<LicenseModel>(
+                licenses.size());
+        for (LicenseModel license : licenses) {
+            if (license.getId() != null) {
+                LicenseModel existing = licensesById.putIfAbsent(
+                        license.getId(), license);
+                if (existing != null) {
+                    license = existing;
+                }
+            }
+            sharedLicenses.add(license);
+        }
+
+        List<ComponentModel> models = new ArrayList<ComponentModel>(
+                components.size());
+        for (Component component : components) {
+            ComponentModel model = new ComponentModel();
+            model.setComponentId(component.componentId);
+            model.setName(component.name);
+            model.setVersion(component.version);
+            model.setHomePage(component.homePage);
+            model.setPaths(component.paths);
+            model.setCopyrights(component.copyrights);
+            if (component.licenseIds != null) {
+                for (Integer licenseId : component.licenseIds) {
+                    model.addNewLicense(sharedLicenses.get(licenseId));
+                }
+            }
+            models.add(model);
+        }
+        return models;
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * On-disk format of stored Protex responses, shared by the cache and the
+ * recordings.
+ * 
+ * Every response is a gzipped file named after the digest of its key.
+ * Entries are written to a temporary file first and then moved into place, so
+ * that an interrupted run never leaves a partial entry behind.
+ * 
+ */
+final class EntryFiles {
+
+    static final String ENTRY_SUFFIX = ".json.gz";
+
+    static final Type COMPONENTS_TYPE = new TypeToken<List<ComponentModel>>() {
+    }.getType();
+
+    static final Type DISCOVERIES_TYPE = new TypeToken<List<StringSearchDiscovery>>() {
+    }.getType();
+
+    static final Type MATCHES_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    // Components only carry their exposed fields, just like in the report
+    static final Gson COMPONENT_GSON = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation().create();
+
+    static final Gson SDK_GSON = new Gson();
+
+    private EntryFiles() {
+    }
+
+    /**
+     * @param directory
+     * @param key
+     * @return The entry file for the key
+     */
+    static File getEntryFile(File directory, String key) {
+        // Spread the entries over subdirectories to keep directories small
+        String name = digest(key);
+        return new File(new File(directory, name.substring(0, 2)), name
+                + ENTRY_SUFFIX);
+    }
+
+    static <T> T readJson(File entry, Gson gson, Type type) throws IOException {
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                new FileInputStream(entry)), "UTF-8")) {
+            return gson.fromJson(reader, type);
+        }
+    }
+
+    static void writeJson(File entry, Gson gson, Object value, Type type)
+            throws IOException {
+        File temp = createTempFile(entry);
+        try {
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                    new FileOutputStream(temp)), "UTF-8")) {
+                gson.toJson(value, type, writer);
+            }
+            Files.move(temp.toPath(), entry.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * The identified files are stored as the paths of each component, this
+     * entry gets far too large for JSON on big projects.
+     * 
+     * The rows go straight into the index, so a broken entry leaves the index
+     * partially filled.
+     */
+    static void readIdentifiedFiles(File entry,
+            IdentifiedFilesIndex identifiedFiles) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(entry))))) {
+            while (in.readBoolean()) {
+                String componentKey = in.readUTF();
+                int pathCount = in.readInt();
+                for (int i = 0; i < pathCount; i++) {
+                    identifiedFiles.addIdentifiedFile(componentKey,
+                            in.readUTF());
+                }
+            }
+        }
+    }
+
+    static void writeIdentifiedFiles(File entry,
+            IdentifiedFilesIndex identifiedFiles) throws IOException {
+        File temp = createTempFile(entry);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(
+                            new FileOutputStream(temp))))) {
+                for (String componentKey : identifiedFiles.getComponentKeys()) {
+                    Set<String> paths = identifiedFiles
+                            .getPathsForComponent(componentKey);
+                    out.writeBoolean(true);
+                    out.writeUTF(componentKey);
+                    out.writeInt(paths.size());
+                    for (String path : paths) {
+                        out.writeUTF(path);
+                    }
+                }
+                out.writeBoolean(false);
+            }
+            Files.move(temp.toPath(), entry.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    static String digest(String value) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = messageDigest.digest(value.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Both are guaranteed by the platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File createTempFile(File entry) throws IOException {
+        FileUtils.forceMkdir(entry.getParentFile());
+        return File.createTempFile("entry", ".tmp", entry.getParentFile());
+    }
+}
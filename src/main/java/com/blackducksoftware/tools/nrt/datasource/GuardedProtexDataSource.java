@@ -0,0 +1,428 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+
+/**
+ * Guards every call to another data source:
+ * 
+ * - a call about a single item (a project, a pattern, a file or the matches of
+ * a discovery) must finish within a deadline, otherwise it is abandoned
+ * 
+ * - a call that failed to reach the server or was abandoned is retried with
+ * exponential backoff, all calls are reads and therefore safe to repeat. An
+ * error reported by the server would only be reported again, it is not
+ * retried.
+ * 
+ * - optionally, when a call about a single item takes longer than the 95th
+ * percentile of its recent calls, a second identical (hedged) request is sent
+ * and whichever answers first wins
+ * 
+ * The bulk calls for a whole project (its components, identified files and
+ * copyright discoveries) take as long as the project is big, so they are only
+ * retried: abandoning or hedging them would just repeat the most expensive
+ * requests. Reading the identified files also fills the caller's index as it
+ * goes.
+ * 
+ * An abandoned call cannot be interrupted while it waits for the server, it
+ * keeps its thread until the request ends. The calls with a deadline share a
+ * bounded pool of threads, so a hung server delays further calls rather than
+ * piling up threads and requests.
+ * 
+ */
+public class GuardedProtexDataSource implements IProtexDataSource {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    // Hedging starts once an operation has this many latency samples
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final IProtexDataSource delegate;
+
+    // Zero means no deadline
+    private final long timeoutMillis;
+
+    private final int retries;
+
+    private final long backoffMillis;
+
+    private final boolean hedge;
+
+    private final long minHedgeDelayMillis;
+
+    // Calls with a deadline run on their own threads so that they can be
+    // abandoned
+    private final ExecutorService callExecutor;
+
+    private final ConcurrentMap<String, LatencyTracker> latencies = new ConcurrentHashMap<String, LatencyTracker>();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong retriedCalls = new AtomicLong();
+
+    private final AtomicLong hedgedCalls = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param delegate
+     * @param timeoutMillis
+     *            deadline of a single call about one item, zero for none
+     * @param retries
+     *            number of retries after the first attempt
+     * @param backoffMillis
+     *            wait before the first retry, doubled for every further retry
+     * @param hedge
+     *            whether slow calls are hedged
+     * @param minHedgeDelayMillis
+     *            a hedged request is never sent sooner than this
+     * @param maxThreads
+     *            most calls with a deadline running at once, abandoned ones
+     *            included
+     */
+    public GuardedProtexDataSource(IProtexDataSource delegate,
+            long timeoutMillis, int retries, long backoffMillis,
+            boolean hedge, long minHedgeDelayMillis, int maxThreads) {
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        this.retries = retries;
+        this.backoffMillis = backoffMillis;
+        this.hedge = hedge;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads,
+                maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        // An abandoned call must not keep the JVM alive
+                        Thread thread = new Thread(runnable, "protex-call-"
+                                + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        callExecutor = executor;
+    }
+
+    @Override
+    public ProtexProject getProjectByName(final String projectName)
+            throws Exception {
+        return call("getProjectByName", new Callable<ProtexProject>() {
+            @Override
+            public ProtexProject call() throws Exception {
+                return delegate.getProjectByName(projectName);
+            }
+        });
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(final String projectId)
+            throws Exception {
+        return retry("getComponents", new Callable<List<ComponentModel>>() {
+            @Override
+            public List<ComponentModel> call() throws Exception {
+                return delegate.getComponents(projectId);
+            }
+        });
+    }
+
+    @Override
+    public void readIdentifiedFiles(final String projectId,
+            final IdentifiedFilesIndex identifiedFiles) throws Exception {
+        // Rows already added by a failed attempt are simply added again, the
+        // index ignores duplicates
+        retry("readIdentifiedFiles", new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                delegate.readIdentifiedFiles(projectId, identifiedFiles);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(
+            final String patternName) throws Exception {
+        return call("getStringSearchPatternByName",
+                new Callable<StringSearchPattern>() {
+                    @Override
+                    public StringSearchPattern call() throws Exception {
+                        return delegate
+                                .getStringSearchPatternByName(patternName);
+                    }
+                });
+    }
+
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            final String projectId, final List<String> paths,
+            final List<StringSearchPatternOriginType> originTypes)
+            throws Exception {
+        return retry("getStringSearchDiscoveries",
+                new Callable<List<StringSearchDiscovery>>() {
+                    @Override
+                    public List<StringSearchDiscovery> call() throws Exception {
+                        return delegate.getStringSearchDiscoveries(projectId,
+                                paths, originTypes);
+                    }
+                });
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(final String projectId,
+            final StringSearchDiscovery searchDiscovery,
+            final Integer contextLength) throws Exception {
+        return call("getStringSearchMatches", new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws Exception {
+                return delegate.getStringSearchMatches(projectId,
+                        searchDiscovery, contextLength);
+            }
+        });
+    }
+
+    @Override
+    public String getFileText(final String projectId, final String path)
+            throws Exception {
+        return call("getFileText", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return delegate.getFileText(projectId, path);
+            }
+        });
+    }
+
+    /**
+     * Logs how often the guards had to step in
+     */
+    public void logStatistics() {
+        log.info("Protex calls timed out: " + timeouts + ", retried: "
+                + retriedCalls + ", hedged: " + hedgedCalls
+                + " (hedge answered first: " + hedgeWins + ")");
+    }
+
+    /**
+     * Runs a call about a single item with a deadline, hedged if configured,
+     * and retries it.
+     */
+    private <T> T call(final String operation, final Callable<T> request)
+            throws Exception {
+        return retry(operation, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return attempt(operation, request);
+            }
+        });
+    }
+
+    /**
+     * Runs a call on the caller's thread and retries it while it fails
+     * transiently.
+     */
+    private <T> T retry(String operation, Callable<T> request)
+            throws Exception {
+        for (int attempt = 0;; attempt++) {
+            try {
+                return request.call();
+            } catch (Exception e) {
+                if (attempt >= retries || !isTransient(e)) {
+                    throw e;
+                }
+                backoff(operation, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the call failed to reach the server or was abandoned,
+     *         rather than the server reporting an error that a retry would
+     *         only get again
+     */
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause
+                .getCause()) {
+            // Connection problems surface as an IOException, possibly wrapped
+            // by the web service client
+            if (cause instanceof IOException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backoff(String operation, int attempt, Exception e)
+            throws InterruptedException {
+        long wait = backoffMillis << Math.min(attempt, 16);
+        log.warn(operation + " failed (" + e.getMessage() + "), retrying in "
+                + wait + " ms");
+        retriedCalls.incrementAndGet();
+        Thread.sleep(wait);
+    }
+
+    /**
+     * Runs a single attempt, hedged if the request is slow, within the
+     * deadline.
+     */
+    private <T> T attempt(String operation, Callable<T> request)
+            throws Exception {
+        LatencyTracker latency = getLatencyTracker(operation);
+        long start = System.nanoTime();
+        long deadline = timeoutMillis > 0 ? start
+                + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+
+        CompletionService<T> completion = new ExecutorCompletionService<T>(
+                callExecutor);
+        Future<T> primary = completion.submit(request);
+        Future<T> hedged = null;
+        int pending = 1;
+        Exception failure = null;
+
+        try {
+            long hedgeDelay = hedge ? latency.getHedgeDelayMillis() : -1;
+            while (pending > 0) {
+                Future<T> done;
+                if (hedged == null && hedgeDelay >= 0) {
+                    done = poll(completion, Math.min(deadline, start
+                            + TimeUnit.MILLISECONDS.toNanos(hedgeDelay)));
+                    if (done == null && System.nanoTime() < deadline) {
+                        hedgedCalls.incrementAndGet();
+                        hedged = completion.submit(request);
+                        pending++;
+                        continue;
+                    }
+                } else {
+                    done = poll(completion, deadline);
+                }
+
+                if (done == null) {
+                    timeouts.incrementAndGet();
+                    throw new TimeoutException(operation
+                            + " did not finish within " + timeoutMillis
+                            + " ms");
+                }
+
+                pending--;
+                try {
+                    T result = done.get();
+                    latency.record(System.nanoTime() - start);
+                    if (done == hedged) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    // The other request may still succeed
+                    failure = e.getCause() instanceof Exception ? (Exception) e
+                            .getCause() : e;
+                }
+            }
+            throw failure;
+        } finally {
+            primary.cancel(true);
+            if (hedged != null) {
+                hedged.cancel(true);
+            }
+        }
+    }
+
+    private <T> Future<T> poll(CompletionService<T> completion,
+            long deadlineNanos) throws InterruptedException {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return completion.take();
+        }
+        return completion.poll(
+                Math.max(0, deadlineNanos - System.nanoTime()),
+                TimeUnit.NANOSECONDS);
+    }
+
+    private LatencyTracker getLatencyTracker(String operation) {
+        LatencyTracker latency = latencies.get(operation);
+        if (latency == null) {
+            latencies.putIfAbsent(operation, new LatencyTracker());
+            latency = latencies.get(operation);
+        }
+        return latency;
+    }
+
+    /**
+     * Latencies of the most recent successful calls of one operation
+     */
+    private class LatencyTracker {
+
+        private final long[] samples = new long[200];
+
+        private int count = 0;
+
+        private int next = 0;
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return The 95th percentile latency (at least the configured
+         *         minimum), -1 while there are too few samples to tell
+         */
+        private synchronized long getHedgeDelayMillis() {
+            if (count < MIN_HEDGE_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            return Math.max(minHedgeDelayMillis,
+                    TimeUnit.NANOSECONDS.toMillis(p95));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.util.List;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+
+/**
+ * Every piece of Protex data the notice report needs. The processor only
+ * talks to Protex through this interface, which lets layers such as the
+ * on-disk cache sit in front of the server.
+ * 
+ */
+public interface IProtexDataSource {
+
+    /**
+     * @param projectName
+     * @return The project, null if no such project exists
+     * @throws Exception
+     */
+    public ProtexProject getProjectByName(String projectName) throws Exception;
+
+    /**
+     * @param projectId
+     * @return The components of the project, with their licenses already
+     *         converted into license models.
+     * @throws Exception
+     */
+    public List<ComponentModel> getComponents(String projectId)
+            throws Exception;
+
+    /**
+     * Reads the identified files report section of the project into the
+     * index, one row at a time.
+     * 
+     * @param projectId
+     * @param identifiedFiles
+     * @throws Exception
+     */
+    public void readIdentifiedFiles(String projectId,
+            IdentifiedFilesIndex identifiedFiles) throws Exception;
+
+    /**
+     * @param patternName
+     * @return The pattern, null if unknown
+     * @throws Exception
+     */
+    public StringSearchPattern getStringSearchPatternByName(String patternName)
+            throws Exception;
+
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception;
+
+    /**
+     * @param projectId
+     * @param searchDiscovery
+     * @param contextLength
+     * @return The text context of every match of the discovery
+     * @throws Exception
+     */
+    public List<String> getStringSearchMatches(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength)
+            throws Exception;
+
+    /**
+     * @param projectId
+     * @param path
+     * @return The uploaded file content, null if the server does not hold
+     *         the content of the file.
+     * @throws Exception
+     */
+    public String getFileText(String projectId, String path) throws Exception;
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+/**
+ * The project attributes the report processing depends on.
+ * 
+ */
+public class ProtexProject {
+
+    private String projectId;
+
+    private String projectName;
+
+    // Changes every time the project is rescanned, null if unknown
+    private String analyzedDate;
+
+    // Changes every time the project is rescanned or its identifications
+    // change, null if unknown
+    private String lastModifiedDate;
+
+    public ProtexProject(String projectId, String projectName,
+            String analyzedDate) {
+        this(projectId, projectName, analyzedDate, null);
+    }
+
+    public ProtexProject(String projectId, String projectName,
+            String analyzedDate, String lastModifiedDate) {
+        this.projectId = projectId;
+        this.projectName = projectName;
+        this.analyzedDate = analyzedDate;
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getAnalyzedDate() {
+        return analyzedDate;
+    }
+
+    public String getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+}
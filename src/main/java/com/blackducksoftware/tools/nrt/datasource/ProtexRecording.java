@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.File;
+import java.util.List;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+
+/**
+ * Layout of a recording of Protex responses, written by
+ * {@link RecordingProtexDataSource} and served by
+ * {@link ReplayProtexDataSource}.
+ * 
+ * Project lookups are kept at the root of the recording, everything else
+ * under <recording>/<project id>/. Discoveries are kept per path so that a
+ * recording can be replayed with a different discovery batch size.
+ * 
+ */
+class ProtexRecording {
+
+    private final File root;
+
+    ProtexRecording(File root) {
+        this.root = root;
+    }
+
+    File getProjectEntry(String projectName) {
+        return EntryFiles.getEntryFile(root, "project|" + projectName);
+    }
+
+    File getPatternEntry(String patternName) {
+        return EntryFiles.getEntryFile(root, "pattern|" + patternName);
+    }
+
+    File getComponentsEntry(String projectId) {
+        return EntryFiles.getEntryFile(getProjectDirectory(projectId),
+                "components");
+    }
+
+    File getIdentifiedFilesEntry(String projectId) {
+        return EntryFiles.getEntryFile(getProjectDirectory(projectId),
+                "identified_files");
+    }
+
+    File getDiscoveriesEntry(String projectId, String path,
+            List<StringSearchPatternOriginType> originTypes) {
+        return EntryFiles.getEntryFile(getProjectDirectory(projectId),
+                "discoveries|" + originTypes + "|" + path);
+    }
+
+    File getMatchesEntry(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength) {
+        return EntryFiles.getEntryFile(getProjectDirectory(projectId),
+                "matches|" + searchDiscovery.getFilePath() + "|"
+                        + searchDiscovery.getStringSearchId() + "|"
+                        + contextLength);
+    }
+
+    File getFileEntry(String projectId, String path) {
+        return EntryFiles.getEntryFile(getProjectDirectory(projectId), "file|"
+                + path);
+    }
+
+    private File getProjectDirectory(String projectId) {
+        return new File(root, projectId.replaceAll("[^A-Za-z0-9_.-]", "_"));
+    }
+}
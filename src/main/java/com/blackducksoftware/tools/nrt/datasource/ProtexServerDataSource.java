@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.fault.SdkFault;
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.CharEncoding;
+import com.blackducksoftware.sdk.protex.project.codetree.CodeTreeNode;
+import com.blackducksoftware.sdk.protex.project.codetree.CodeTreeNodeType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscoveryWithMatches;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchMatch;
+import com.blackducksoftware.sdk.protex.report.Report;
+import com.blackducksoftware.sdk.protex.report.ReportFormat;
+import com.blackducksoftware.sdk.protex.report.ReportSection;
+import com.blackducksoftware.sdk.protex.report.ReportSectionType;
+import com.blackducksoftware.sdk.protex.report.ReportTemplateRequest;
+import com.blackducksoftware.tools.commonframework.standard.common.ProjectPojo;
+import com.blackducksoftware.tools.commonframework.standard.protex.ProtexProjectPojo;
+import com.blackducksoftware.tools.connector.protex.IProtexServerWrapper;
+import com.blackducksoftware.tools.connector.protex.license.ProtexLicensePojo;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Reads everything straight from the Protex server.
+ * 
+ */
+public class ProtexServerDataSource implements IProtexDataSource {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    private static final String IDENTIFIED_FILES_REPORT_NAME = "Identified Files";
+
+    private static final List<String> IDENTIFIED_FILES_COLUMNS = Arrays
+            .asList("Component", "Version", "File/Folder");
+
+    private final IProtexServerWrapper<ProtexProjectPojo> protexWrapper;
+
+    // Shared across all projects read through this data source
+    private final ConcurrentMap<String, LicenseModel> licensesById = new ConcurrentHashMap<String, LicenseModel>();
+
+    public ProtexServerDataSource(
+            IProtexServerWrapper<ProtexProjectPojo> protexWrapper) {
+        this.protexWrapper = protexWrapper;
+    }
+
+    @Override
+    public ProtexProject getProjectByName(String projectName) throws Exception {
+        ProjectPojo protexProject = protexWrapper.getProjectByName(projectName);
+        if (protexProject == null) {
+            return null;
+        }
+
+        // The project pojo does not tell when the identifications last
+        // changed, only when the project was analyzed
+        return new ProtexProject(protexProject.getProjectKey(),
+                protexProject.getProjectName(),
+                protexProject.getAnalyzedDate(), null);
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(String projectId)
+            throws Exception {
+        List<ComponentModel> protexComponents = protexWrapper
+                .getProjectManager().getComponentsByProjectId(
+                        ComponentModel.class, projectId);
+
+        for (ComponentModel protexComp : protexComponents) {
+            // Convert common framework licenses to licensemodels
+            getLicensesForComponent(protexComp);
+        }
+
+        return protexComponents;
+    }
+
+    /**
+     * This is currently the fastest way to get identified files per component
+     * The SDK currently does not expose any faster way to get Paths per
+     * component.
+     * 
+     * The report section is downloaded to a temporary file and parsed one row
+     * at a time straight into the index, the rows are never held in memory.
+     */
+    @Override
+    public void readIdentifiedFiles(String projectId,
+            IdentifiedFilesIndex identifiedFiles) throws Exception {
+        ReportSection section = new ReportSection();
+        section.setLabel(ReportSectionType.IDENTIFIED_FILES.toString());
+        section.setSectionType(ReportSectionType.IDENTIFIED_FILES);
+
+        ReportTemplateRequest templateRequest = new ReportTemplateRequest();
+        templateRequest.setName(IDENTIFIED_FILES_REPORT_NAME);
+        templateRequest.setTitle(IDENTIFIED_FILES_REPORT_NAME);
+        templateRequest.getSections().add(section);
+
+        log.info("Downloading identified files...");
+        Report report = protexWrapper.getInternalApiWrapper().getReportApi()
+                .generateAdHocProjectReport(projectId, templateRequest,
+                        ReportFormat.CSV, false);
+
+        Path reportFile = Files.createTempFile("identified_files", ".csv");
+        try {
+            try (InputStream in = report.getFileContent().getInputStream()) {
+                Files.copy(in, reportFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            log.info("Parsing identified files...");
+            try (CsvReader reader = new CsvReader(Files.newBufferedReader(
+                    reportFile, StandardCharsets.UTF_8))) {
+                parseIdentifiedFiles(reader, identifiedFiles);
+            }
+        } finally {
+            Files.deleteIfExists(reportFile);
+        }
+    }
+
+    private void parseIdentifiedFiles(CsvReader reader,
+            IdentifiedFilesIndex identifiedFiles) throws Exception {
+        // Anything above the column header (section title) is skipped
+        List<String> row;
+        List<String> header = null;
+        while (header == null && (row = reader.readRow()) != null) {
+            if (row.containsAll(IDENTIFIED_FILES_COLUMNS)) {
+                header = row;
+            }
+        }
+        if (header == null) {
+            throw new Exception("Unable to find the columns "
+                    + IDENTIFIED_FILES_COLUMNS
+                    + " in the identified files report");
+        }
+
+        int componentColumn = header.indexOf("Component");
+        int versionColumn = header.indexOf("Version");
+        int pathColumn = header.indexOf("File/Folder");
+        int columns = Math.max(componentColumn,
+                Math.max(versionColumn, pathColumn)) + 1;
+
+        while ((row = reader.readRow()) != null) {
+            if (row.size() < columns) {
+                // Blank line or the end of the section
+                continue;
+            }
+
+            String compName = row.get(componentColumn);
+            String compVersion = row.get(versionColumn);
+            String path = row.get(pathColumn);
+            // Key must be more than component name, as the name is not guaranteed unique.
+            String key = compName + ":" + compVersion;
+
+            identifiedFiles.addIdentifiedFile(key, path);
+        }
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(String patternName)
+            throws Exception {
+        return protexWrapper.getInternalApiWrapper().getPolicyApi()
+                .getStringSearchPatternByName(patternName);
+    }
+
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception {
+        List<CodeTreeNode> treeNodes = new ArrayList<CodeTreeNode>();
+        for (String path : paths) {
+            CodeTreeNode node = new CodeTreeNode();
+            node.setName(path);
+            node.setNodeType(CodeTreeNodeType.FILE);
+            treeNodes.add(node);
+        }
+
+        return protexWrapper
+                .getInternalApiWrapper()
+                .getDiscoveryApi()
+                .getStringSearchDiscoveries(projectId, treeNodes,
+                        originTypes);
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength)
+            throws Exception {
+        StringSearchDiscoveryWithMatches discoveryMatch = protexWrapper
+                .getInternalApiWrapper()
+                .getDiscoveryApi()
+                .getStringSearchMatches(projectId, searchDiscovery,
+                        contextLength);
+
+        List<String> contexts = new ArrayList<String>();
+        for (StringSearchMatch match : discoveryMatch.getMatches()) {
+            contexts.add(new String(match.getContext()));
+        }
+        return contexts;
+    }
+
+    @Override
+    public String getFileText(String projectId, String path) throws Exception {
+        String fileText = null;
+
+        log.info("hit with license name found for file " + path);
+
+        try {
+            // reading the uploaded content of the file from the
+            // database
+            fileText = new String(protexWrapper.getInternalApiWrapper()
+                    .getCodeTreeApi()
+                    .getFileContent(projectId, path, CharEncoding.NONE));
+
+        } catch (SdkFault e) {
+            log.warn(
+                    path
+                            + " needs to be re-configured as File Upload type and project re-scanned in order to process by this tool.",
+                    e);
+        }
+
+        return fileText;
+    }
+
+    /**
+     * License models are shared by every component (and project) using the
+     * license, so each license text is held once.
+     * 
+     * @param license
+     * @return
+     */
+    private LicenseModel getLicenseModel(ProtexLicensePojo license) {
+        LicenseModel licenseModel = license.getId() != null ? licensesById
+                .get(license.getId()) : null;
+        if (licenseModel != null) {
+            return licenseModel;
+        }
+
+        // License information
+        licenseModel = new LicenseModel();
+
+        licenseModel.setId(license.getId());
+        licenseModel.setName(license.getName());
+        licenseModel.setText(license.getLicenseText());
+
+        if (license.getId() != null) {
+            LicenseModel existing = licensesById.putIfAbsent(license.getId(),
+                    licenseModel);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return licenseModel;
+    }
+
+    private void getLicensesForComponent(ComponentModel componentModel) {
+
+        List<ProtexLicensePojo> licensePojos = componentModel.getLicenses();
+        if (licensePojos != null)
+        {
+            for (ProtexLicensePojo license : licensePojos)
+            {
+                componentModel.addNewLicense(getLicenseModel(license));
+            }
+        }
+        else
+        {
+            log.warn("No license information available for: " + componentModel.getNameAndVersion());
+        }
+    }
+}
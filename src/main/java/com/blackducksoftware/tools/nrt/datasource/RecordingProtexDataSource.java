@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+
+/**
+ * Passes every call on to another data source and records the response, so
+ * that the run can later be replayed without a server by
+ * {@link ReplayProtexDataSource}.
+ * 
+ * Failed calls are not recorded. A response that cannot be written fails the
+ * call, a recording with gaps cannot be replayed.
+ * 
+ */
+public class RecordingProtexDataSource implements IProtexDataSource {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    private final IProtexDataSource delegate;
+
+    private final ProtexRecording recording;
+
+    public RecordingProtexDataSource(IProtexDataSource delegate,
+            File recordingRoot) {
+        this.delegate = delegate;
+        recording = new ProtexRecording(recordingRoot);
+        log.info("Recording Protex responses to: "
+                + recordingRoot.getAbsolutePath());
+    }
+
+    @Override
+    public ProtexProject getProjectByName(String projectName) throws Exception {
+        ProtexProject project = delegate.getProjectByName(projectName);
+        EntryFiles.writeJson(recording.getProjectEntry(projectName),
+                EntryFiles.SDK_GSON, project, ProtexProject.class);
+        return project;
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(String projectId)
+            throws Exception {
+        List<ComponentModel> components = delegate.getComponents(projectId);
+        EntryFiles.writeJson(recording.getComponentsEntry(projectId),
+                EntryFiles.COMPONENT_GSON, components,
+                EntryFiles.COMPONENTS_TYPE);
+        return components;
+    }
+
+    @Override
+    public void readIdentifiedFiles(String projectId,
+            IdentifiedFilesIndex identifiedFiles) throws Exception {
+        delegate.readIdentifiedFiles(projectId, identifiedFiles);
+        EntryFiles.writeIdentifiedFiles(
+                recording.getIdentifiedFilesEntry(projectId), identifiedFiles);
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(String patternName)
+            throws Exception {
+        StringSearchPattern pattern = delegate
+                .getStringSearchPatternByName(patternName);
+        EntryFiles.writeJson(recording.getPatternEntry(patternName),
+                EntryFiles.SDK_GSON, pattern, StringSearchPattern.class);
+        return pattern;
+    }
+
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception {
+        List<StringSearchDiscovery> searchDiscoveries = delegate
+                .getStringSearchDiscoveries(projectId, paths, originTypes);
+
+        // Every requested path gets an entry, even without discoveries
+        Map<String, List<StringSearchDiscovery>> discoveriesByPath = new LinkedHashMap<String, List<StringSearchDiscovery>>();
+        for (String path : paths) {
+            discoveriesByPath.put(path, new ArrayList<StringSearchDiscovery>());
+        }
+        for (StringSearchDiscovery searchDiscovery : searchDiscoveries) {
+            List<StringSearchDiscovery> pathDiscoveries = discoveriesByPath
+                    .get(searchDiscovery.getFilePath());
+            if (pathDiscoveries != null) {
+                pathDiscoveries.add(searchDiscovery);
+            }
+        }
+
+        for (Map.Entry<String, List<StringSearchDiscovery>> entry : discoveriesByPath
+                .entrySet()) {
+            EntryFiles.writeJson(recording.getDiscoveriesEntry(projectId,
+                    entry.getKey(), originTypes), EntryFiles.SDK_GSON, entry
+                    .getValue(), EntryFiles.DISCOVERIES_TYPE);
+        }
+        return searchDiscoveries;
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength)
+            throws Exception {
+        List<String> contexts = delegate.getStringSearchMatches(projectId,
+                searchDiscovery, contextLength);
+        EntryFiles.writeJson(recording.getMatchesEntry(projectId,
+                searchDiscovery, contextLength), EntryFiles.SDK_GSON, contexts,
+                EntryFiles.MATCHES_TYPE);
+        return contexts;
+    }
+
+    @Override
+    public String getFileText(String projectId, String path) throws Exception {
+        String fileText = delegate.getFileText(projectId, path);
+        EntryFiles.writeJson(recording.getFileEntry(projectId, path),
+                EntryFiles.SDK_GSON, fileText, String.class);
+        return fileText;
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.google.gson.Gson;
+
+/**
+ * Serves the responses captured by {@link RecordingProtexDataSource} instead
+ * of talking to a server, for reproducible runs without a network.
+ * 
+ * Every call waits for the configured latency first, plus a random share of
+ * the jitter, to mimic the round trip to the server. A call that was not
+ * recorded fails.
+ * 
+ */
+public class ReplayProtexDataSource implements IProtexDataSource {
+
+    final private Logger log = Logger.getLogger(this.getClass());
+
+    private final ProtexRecording recording;
+
+    private final long latencyMillis;
+
+    private final long jitterMillis;
+
+    // Seeded so that repeated runs see the same latencies
+    private final Random jitter = new Random(0);
+
+    public ReplayProtexDataSource(File recordingRoot, long latencyMillis,
+            long jitterMillis) throws IOException {
+        if (!recordingRoot.isDirectory()) {
+            throw new IOException("No recording found at: "
+                    + recordingRoot.getAbsolutePath());
+        }
+        recording = new ProtexRecording(recordingRoot);
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        log.info("Replaying Protex responses from: "
+                + recordingRoot.getAbsolutePath() + " (latency "
+                + latencyMillis + " ms, jitter " + jitterMillis + " ms)");
+    }
+
+    @Override
+    public ProtexProject getProjectByName(String projectName) throws Exception {
+        return replay(recording.getProjectEntry(projectName),
+                EntryFiles.SDK_GSON, ProtexProject.class, "project "
+                        + projectName);
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(String projectId)
+            throws Exception {
+        return replay(recording.getComponentsEntry(projectId),
+                EntryFiles.COMPONENT_GSON, EntryFiles.COMPONENTS_TYPE,
+                "components of project " + projectId);
+    }
+
+    @Override
+    public void readIdentifiedFiles(String projectId,
+            IdentifiedFilesIndex identifiedFiles) throws Exception {
+        waitForLatency();
+        File entry = getRecordedEntry(recording
+                .getIdentifiedFilesEntry(projectId),
+                "identified files of project " + projectId);
+        EntryFiles.readIdentifiedFiles(entry, identifiedFiles);
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(String patternName)
+            throws Exception {
+        return replay(recording.getPatternEntry(patternName),
+                EntryFiles.SDK_GSON, StringSearchPattern.class,
+                "string search pattern " + patternName);
+    }
+
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(
+            String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception {
+        // A single round trip, no matter how many paths
+        waitForLatency();
+
+        List<StringSearchDiscovery> searchDiscoveries = new ArrayList<StringSearchDiscovery>();
+        for (String path : paths) {
+            File entry = getRecordedEntry(recording.getDiscoveriesEntry(
+                    projectId, path, originTypes), "discoveries of " + path);
+            List<StringSearchDiscovery> pathDiscoveries = EntryFiles.readJson(
+                    entry, EntryFiles.SDK_GSON, EntryFiles.DISCOVERIES_TYPE);
+            searchDiscoveries.addAll(pathDiscoveries);
+        }
+        return searchDiscoveries;
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(String projectId,
+            StringSearchDiscovery searchDiscovery, Integer contextLength)
+            throws Exception {
+        return replay(recording.getMatchesEntry(projectId, searchDiscovery,
+                contextLength), EntryFiles.SDK_GSON,
+                EntryFiles.MATCHES_TYPE, "matches of "
+                        + searchDiscovery.getFilePath());
+    }
+
+    @Override
+    public String getFileText(String projectId, String path) throws Exception {
+        return replay(recording.getFileEntry(projectId, path),
+                EntryFiles.SDK_GSON, String.class, "content of " + path);
+    }
+
+    private <T> T replay(File entry, Gson gson, Type type, String description)
+            throws Exception {
+        waitForLatency();
+        return EntryFiles.readJson(getRecordedEntry(entry, description), gson,
+                type);
+    }
+
+    private File getRecordedEntry(File entry, String description)
+            throws IOException {
+        if (!entry.isFile()) {
+            throw new IOException("Not recorded: " + description);
+        }
+        return entry;
+    }
+
+    private void waitForLatency() throws InterruptedException {
+        long wait = latencyMillis;
+        if (jitterMillis > 0) {
+            synchronized (jitter) {
+                wait += (long) (jitter.nextDouble() * jitterMillis);
+            }
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
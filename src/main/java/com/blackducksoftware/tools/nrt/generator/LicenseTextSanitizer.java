@@ -0,0 +1,491 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Entities;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.safety.Whitelist;
+
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Turns the HTML of license texts into plain text. The result is the text
+ * Jsoup.clean() without any allowed tags followed by
+ * StringEscapeUtils.unescapeHtml() gives: the text outside of tags with its
+ * entities decoded, without comments, scripts and styles, trimmed.
+ * 
+ * The text is extracted in a single pass over the HTML. Markup the parser
+ * does more with than a single pass can follow (tables, whose text it moves
+ * around, raw text elements other than script and style, entities outside
+ * of HTML 4 and the like) is left to Jsoup.
+ * 
+ * Results are kept by license text for the lifetime of the sanitizer, a
+ * license shared by many components is only converted once.
+ * 
+ */
+public class LicenseTextSanitizer {
+
+    // Elements the single pass hands over to the parser
+    private static final Set<String> PARSED_ELEMENTS = new HashSet<String>(
+            Arrays.asList("table", "caption", "colgroup", "col", "tbody",
+                    "thead", "tfoot", "tr", "td", "th", "select", "optgroup",
+                    "option", "textarea", "title", "xmp", "iframe", "noembed",
+                    "noframes", "noscript", "plaintext", "frameset", "frame",
+                    "isindex", "svg", "math"));
+
+    // Where the HTML 4 and the HTML 5 entities differ
+    private static final Set<String> PARSED_ENTITIES = new HashSet<String>(
+            Arrays.asList("lang", "rang"));
+
+    private final ConcurrentMap<String, String> texts = new ConcurrentHashMap<String, String>();
+
+    /**
+     * @param license
+     * @return The license text as plain text
+     */
+    public String sanitize(LicenseModel license) {
+        if (license.getText() == null) {
+            throw new IllegalArgumentException("License "
+                    + license.getName() + " has no text");
+        }
+
+        String digest = license.getTextDigest();
+        String text = texts.get(digest);
+        if (text == null) {
+            text = toText(license.getText());
+            String previous = texts.putIfAbsent(digest, text);
+            if (previous != null) {
+                text = previous;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Converts HTML to plain text, without keeping the result.
+     * 
+     * @param html
+     * @return
+     */
+    public static String toText(String html) {
+        String text = new TextExtractor(html).extract();
+        if (text == null) {
+            text = StringEscapeUtils.unescapeHtml(Jsoup.clean(html, "",
+                    Whitelist.none(),
+                    new Document.OutputSettings().prettyPrint(false)));
+        }
+        return text;
+    }
+
+    /**
+     * Follows the HTML tokenizer through the text, dropping the markup.
+     */
+    private static class TextExtractor {
+
+        private final String html;
+
+        private final int length;
+
+        private final StringBuilder text;
+
+        private int position = 0;
+
+        private TextExtractor(String html) {
+            this.html = html;
+            length = html.length();
+            text = new StringBuilder(length);
+        }
+
+        /**
+         * @return The text, or null if the HTML has to be parsed
+         */
+        private String extract() {
+            // The parser drops null characters and normalizes line breaks
+            if (html.indexOf('\0') >= 0 || html.indexOf('\r') >= 0) {
+                return null;
+            }
+
+            while (position < length) {
+                int markup = position;
+                while (markup < length && html.charAt(markup) != '<'
+                        && html.charAt(markup) != '&') {
+                    markup++;
+                }
+                text.append(html, position, markup);
+                position = markup;
+
+                if (position == length) {
+                    break;
+                }
+                boolean handled = html.charAt(position) == '<' ? markup()
+                        : characterReference();
+                if (!handled) {
+                    return null;
+                }
+            }
+
+            return text.toString().trim();
+        }
+
+        private boolean markup() {
+            char next = charAt(position + 1);
+            if (isAsciiLetter(next)) {
+                return startTag();
+            } else if (Character.isLetter(next)) {
+                // Whether this opens a tag depends on the parser
+                return false;
+            } else if (next == '/') {
+                return endTag();
+            } else if (next == '!') {
+                return markupDeclaration();
+            } else if (next == '?') {
+                position = bogusCommentEnd(position + 2);
+            } else {
+                text.append('<');
+                position++;
+            }
+            return true;
+        }
+
+        private boolean startTag() {
+            int nameEnd = tagNameEnd(position + 1);
+            String name = html.substring(position + 1, nameEnd).toLowerCase(
+                    Locale.ENGLISH);
+            if (PARSED_ELEMENTS.contains(name)) {
+                return false;
+            }
+
+            position = tagEnd(nameEnd);
+            if (position < 0) {
+                return false;
+            } else if (name.equals("script")) {
+                return rawText("script", true);
+            } else if (name.equals("style")) {
+                return rawText("style", false);
+            } else if ((name.equals("pre") || name.equals("listing"))
+                    && charAt(position) == '\n') {
+                // Whether the line break is dropped depends on the parser
+                return false;
+            }
+            return true;
+        }
+
+        private boolean endTag() {
+            char next = charAt(position + 2);
+            if (isAsciiLetter(next)) {
+                int nameEnd = tagNameEnd(position + 2);
+                String name = html.substring(position + 2, nameEnd)
+                        .toLowerCase(Locale.ENGLISH);
+                if (PARSED_ELEMENTS.contains(name)) {
+                    return false;
+                }
+                position = tagEnd(nameEnd);
+                if (position < 0) {
+                    return false;
+                }
+            } else if (Character.isLetter(next)) {
+                return false;
+            } else if (next == '>') {
+                position += 3;
+            } else if (position + 2 == length) {
+                text.append("</");
+                position = length;
+            } else {
+                position = bogusCommentEnd(position + 2);
+            }
+            return true;
+        }
+
+        private boolean markupDeclaration() {
+            int start = position + 2;
+            if (html.startsWith("--", start)) {
+                position = commentEnd(start + 2);
+            } else if (html.regionMatches(true, start, "DOCTYPE", 0, 7)) {
+                position = bogusCommentEnd(start + 7);
+            } else if (html.startsWith("[CDATA[", start)) {
+                return false;
+            } else {
+                position = bogusCommentEnd(start);
+            }
+            return true;
+        }
+
+        /**
+         * Skips the content of a script or style element, up to and including
+         * its end tag.
+         */
+        private boolean rawText(String name, boolean script) {
+            int end = position;
+            while (true) {
+                end = html.indexOf("</", end);
+                if (end < 0) {
+                    // Runs to the end of the document
+                    position = length;
+                    return true;
+                }
+                int nameEnd = end + 2 + name.length();
+                if (html.regionMatches(true, end + 2, name, 0, name.length())
+                        && (isWhitespace(charAt(nameEnd))
+                                || charAt(nameEnd) == '/' || charAt(nameEnd) == '>')) {
+                    break;
+                }
+                end += 2;
+            }
+
+            // Comments inside scripts change where they end
+            if (script && html.substring(position, end).contains("<!--")) {
+                return false;
+            }
+            position = tagEnd(end + 2 + name.length());
+            return position >= 0;
+        }
+
+        private boolean characterReference() {
+            char next = charAt(position + 1);
+            if (next == '#') {
+                return numericReference();
+            } else if (!isAsciiLetter(next)) {
+                text.append('&');
+                position++;
+                return true;
+            }
+
+            int end = position + 1;
+            while (isAsciiLetter(charAt(end))) {
+                end++;
+            }
+            while (isDigit(charAt(end))) {
+                end++;
+            }
+            String name = html.substring(position + 1, end);
+            int value = PARSED_ENTITIES.contains(name) ? -1
+                    : Entities.HTML40.entityValue(name);
+            if (value < 0) {
+                // Either a prefix of it is an entity or the parser knows it
+                return false;
+            }
+
+            text.append((char) value);
+            position = charAt(end) == ';' ? end + 1 : end;
+            return true;
+        }
+
+        private boolean numericReference() {
+            int start = position + 2;
+            boolean hex = charAt(start) == 'x' || charAt(start) == 'X';
+            if (hex) {
+                start++;
+            }
+
+            int end = start;
+            while (hex ? isHexDigit(charAt(end)) : isDigit(charAt(end))) {
+                end++;
+            }
+            if (end == start) {
+                // Not a reference after all
+                text.append('&');
+                position++;
+                return true;
+            }
+            if (end - start > 6) {
+                return false;
+            }
+
+            int value = Integer.parseInt(html.substring(start, end), hex ? 16
+                    : 10);
+            // Leaves control characters, surrogates and characters outside
+            // of the basic plane to the parser
+            if (!(value == '\t' || value == '\n'
+                    || (value >= 0x20 && value < 0x7f)
+                    || (value >= 0xa0 && value < 0xd800) || (value >= 0xe000 && value <= 0xfffd))) {
+                return false;
+            }
+
+            text.append((char) value);
+            position = charAt(end) == ';' ? end + 1 : end;
+            return true;
+        }
+
+        private int tagNameEnd(int start) {
+            int end = start;
+            while (end < length) {
+                char c = html.charAt(end);
+                if (isWhitespace(c) || c == '/' || c == '>' || c == '<') {
+                    break;
+                }
+                end++;
+            }
+            return end;
+        }
+
+        /**
+         * Follows the attributes of a tag to its end, a tag cut off by the end
+         * of the document is dropped along with the rest of it.
+         * 
+         * @return The position after the tag, -1 if the tag holds a '<'
+         *         outside of a quoted value, where parsers differ on whether
+         *         it starts a new tag
+         */
+        private int tagEnd(int start) {
+            final int beforeName = 0, name = 1, afterName = 2, beforeValue = 3, doubleQuoted = 4, singleQuoted = 5, unquoted = 6, afterValue = 7, selfClosing = 8;
+
+            int state = beforeName;
+            for (int i = start; i < length; i++) {
+                char c = html.charAt(i);
+                if (c == '<' && state != doubleQuoted && state != singleQuoted) {
+                    return -1;
+                }
+                switch (state) {
+                case beforeName:
+                case afterName:
+                    if (c == '>') {
+                        return i + 1;
+                    } else if (c == '/') {
+                        state = selfClosing;
+                    } else if (c == '=' && state == afterName) {
+                        state = beforeValue;
+                    } else if (!isWhitespace(c)) {
+                        state = name;
+                    }
+                    break;
+                case name:
+                    if (c == '>') {
+                        return i + 1;
+                    } else if (c == '/') {
+                        state = selfClosing;
+                    } else if (c == '=') {
+                        state = beforeValue;
+                    } else if (isWhitespace(c)) {
+                        state = afterName;
+                    }
+                    break;
+                case beforeValue:
+                    if (c == '>') {
+                        return i + 1;
+                    } else if (c == '"') {
+                        state = doubleQuoted;
+                    } else if (c == '\'') {
+                        state = singleQuoted;
+                    } else if (!isWhitespace(c)) {
+                        state = unquoted;
+                    }
+                    break;
+                case doubleQuoted:
+                    if (c == '"') {
+                        state = afterValue;
+                    }
+                    break;
+                case singleQuoted:
+                    if (c == '\'') {
+                        state = afterValue;
+                    }
+                    break;
+                case unquoted:
+                    if (c == '>') {
+                        return i + 1;
+                    } else if (isWhitespace(c)) {
+                        state = beforeName;
+                    }
+                    break;
+                case afterValue:
+                case selfClosing:
+                    if (c == '>') {
+                        return i + 1;
+                    } else if (c == '/' && state == afterValue) {
+                        state = selfClosing;
+                    } else {
+                        // Starts over before an attribute name
+                        state = beforeName;
+                        i--;
+                    }
+                    break;
+                }
+            }
+            return length;
+        }
+
+        private int commentEnd(int start) {
+            // <!--> and <!---> are complete comments
+            if (html.startsWith(">", start)) {
+                return start + 1;
+            } else if (html.startsWith("->", start)) {
+                return start + 2;
+            }
+
+            int end = start;
+            while (true) {
+                end = html.indexOf("--", end);
+                if (end < 0) {
+                    return length;
+                }
+                int dashesEnd = end + 2;
+                while (charAt(dashesEnd) == '-') {
+                    dashesEnd++;
+                }
+                if (charAt(dashesEnd) == '>') {
+                    return dashesEnd + 1;
+                } else if (charAt(dashesEnd) == '!'
+                        && charAt(dashesEnd + 1) == '>') {
+                    return dashesEnd + 2;
+                }
+                end = dashesEnd;
+            }
+        }
+
+        private int bogusCommentEnd(int start) {
+            int end = html.indexOf('>', start);
+            return end < 0 ? length : end + 1;
+        }
+
+        private char charAt(int index) {
+            return index < length ? html.charAt(index) : '\0';
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isHexDigit(char c) {
+            return isDigit(c) || (c >= 'a' && c <= 'f')
+                    || (c >= 'A' && c <= 'F');
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == '\t' || c == '\n' || c == '\r' || c == '\f'
+                    || c == ' ';
+        }
+    }
+}
@@ -22,29 +22,42 @@
  *******************************************************************************/
 package com.blackducksoftware.tools.nrt.generator;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.log4j.Logger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.DataNode;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.safety.Whitelist;
-import org.jsoup.select.Elements;
 
 import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
-import com.blackducksoftware.tools.nrt.config.NRTConstants;
+import com.blackducksoftware.tools.nrt.generator.ReportDictionary.EncodedComponent;
 import com.blackducksoftware.tools.nrt.model.ComponentModel;
 import com.blackducksoftware.tools.nrt.model.LicenseModel;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Generator for: - an HTML Report from a provided component map. - a Text based
@@ -57,10 +70,17 @@ public class NRTReportGenerator {
 
     final private Logger log = Logger.getLogger(this.getClass().getName());
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String NOTICE_SEPARATOR = "==========================================================================";
+
     private NRTConfigurationManager nrtConfig = null;
 
     private TreeMap<String, ComponentModel> componentMap = null;
 
+    // Plain text of the licenses, kept for all components
+    private final LicenseTextSanitizer licenseTextSanitizer = new LicenseTextSanitizer();
+
     public NRTReportGenerator(NRTConfigurationManager nrtConfig,
             TreeMap<String, ComponentModel> compmap) {
         this.nrtConfig = nrtConfig;
@@ -68,70 +88,174 @@ public class NRTReportGenerator {
     }
 
     /**
-     * Copies the HTML template into the finalHtmlOutput then injects the
-     * generates JSON data into the specific div location and writes it out.
+     * Injects the generated JSON data into the specific div location of the
+     * HTML template and writes the report to finalHtmlOutput, replacing any
+     * existing file.
      * 
-     * @param expectedFile
+     * The template comes from the classpath and is split at the data block
+     * once per JVM, see {@link ReportTemplate}. The report is streamed out:
+     * the template up to the block, the JSON and then the rest of the
+     * template. The report is never held in memory as a whole.
+     * 
+     * If the report is sharded the components are written to data files next
+     * to the report instead, the report itself only lists the shards.
+     * 
+     * @param finalHtmlOutput
      */
     public void generateHTMLFromTemplate(File finalHtmlOutput) {
 
         log.info("Writing to report: " + finalHtmlOutput);
-        String jsonComponentList = generateJSONFromObject(componentMap);
-        String jsonPropertyList = generateJSONFromObject(nrtConfig
-                .getOptionsForExport());
-        // Construct a variable out of it
-        jsonComponentList = "var compList=[" + jsonComponentList + "]";
-        jsonPropertyList = "var propList=[" + jsonPropertyList + "]";
-
-        PrintWriter writer = null;
+
         try {
-            // Read the template
-            Document doc = Jsoup.parse(finalHtmlOutput, "UTF-8");
-
-            // Inject the JSON
-            Elements jsonElementDivBlock = doc
-                    .getElementsByClass(NRTConstants.HTML_JSON_DATA_BLOCK);
-
-            // This will be empty, but it should exist
-            Element jsonDivElement = jsonElementDivBlock.get(0);
-
-            if (jsonDivElement != null) {
-                // Remove any script tags from it, in case the user populated
-                // the template incorrectly with data
-                if (jsonDivElement.children().size() > 0) {
-                    Elements children = jsonDivElement.children();
-                    for (int i = 0; i < children.size(); i++) {
-                        Element el = children.get(i);
-                        el.remove();
-                    }
+            ReportTemplate template = ReportTemplate.forConfig(nrtConfig);
+
+            Gson gson = ReportJson.getGson(Boolean.TRUE.equals(nrtConfig
+                    .isHtmlJsonCompact()));
+            int shardSize = nrtConfig.getHtmlShardSize();
+            List<ReportShard> shards = null;
+            ReportDictionary dictionary = null;
+            if (shardSize > 0) {
+                shards = writeShards(finalHtmlOutput, gson, shardSize);
+            } else {
+                // Licenses and copyrights are written once, components refer
+                // to them
+                dictionary = new ReportDictionary(componentMap);
+                log.info("Report holds " + dictionary.getLicenses().size()
+                        + " distinct licenses and "
+                        + dictionary.getCopyrights().size()
+                        + " distinct copyrights");
+            }
+
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(finalHtmlOutput.toPath()))) {
+                template.writePrefix(out);
+
+                // Construct a variable out of each
+                Writer writer = new OutputStreamWriter(out, UTF_8);
+                if (shards != null) {
+                    writeScript(writer, gson, "var shardList=", shards, "");
+                } else {
+                    writeScript(writer, gson, "var compList=[",
+                            dictionary.getComponents(), "]");
+                    writeScript(writer, gson, "var licenseList=",
+                            dictionary.getLicenses(), "");
+                    writeScript(writer, gson, "var copyrightList=",
+                            dictionary.getCopyrights(), "");
                 }
+                writeScript(writer, gson, "var propList=[",
+                        nrtConfig.getOptionsForExport(), "]");
+                writer.write("\n");
+                writer.flush();
 
-                addNewScriptElementWithJson(jsonDivElement, jsonComponentList);
-                addNewScriptElementWithJson(jsonDivElement, jsonPropertyList);
-            } else {
-                log.error("Unable to find a valid critical DIV inside HTML template: "
-                        + NRTConstants.HTML_JSON_DATA_BLOCK);
+                template.writeSuffix(out);
             }
-            writer = new PrintWriter(finalHtmlOutput, "UTF-8");
-            // Write out the file
-            writer.write(doc.html());
-            writer.flush();
-            writer.close();
 
         } catch (Exception e) {
             log.error("Unable to write out final report file!", e);
-        } finally {
-            writer.close();
         }
 
     }
 
-    private void addNewScriptElementWithJson(Element jsonCompListElement,
-            String jsonText) {
-        Element scriptElement = jsonCompListElement.appendElement("script");
-        DataNode jsonNode = new DataNode(jsonText, "");
-        scriptElement.appendChild(jsonNode);
+    /**
+     * Writes the components in report order to data files of shardSize
+     * components each, in a folder named after the report. Every data file
+     * holds the licenses and copyrights of its own components and hands them
+     * to bdsShardLoaded() of the report page when it is loaded. Data files
+     * left over from an earlier, bigger report are deleted first.
+     * 
+     * @return The shards, in report order
+     */
+    private List<ReportShard> writeShards(File finalHtmlOutput, Gson gson,
+            int shardSize) throws IOException {
+        String reportName = finalHtmlOutput.getName();
+        int extension = reportName.lastIndexOf('.');
+        String dataFolderName = (extension > 0 ? reportName.substring(0,
+                extension) : reportName) + "_data";
+        Path dataFolder = finalHtmlOutput.getAbsoluteFile().getParentFile()
+                .toPath().resolve(dataFolderName);
+        Files.createDirectories(dataFolder);
+        try (DirectoryStream<Path> staleShards = Files.newDirectoryStream(
+                dataFolder, "shard_*.js")) {
+            for (Path staleShard : staleShards) {
+                Files.delete(staleShard);
+            }
+        }
 
+        List<ReportShard> shards = new ArrayList<ReportShard>();
+        Map<String, ComponentModel> shardComponents = new LinkedHashMap<String, ComponentModel>();
+        for (Map.Entry<String, ComponentModel> entry : componentMap.entrySet()) {
+            shardComponents.put(entry.getKey(), entry.getValue());
+            if (shardComponents.size() == shardSize) {
+                shards.add(writeShard(dataFolder, dataFolderName, gson,
+                        shards.size(), shardComponents));
+                shardComponents.clear();
+            }
+        }
+        if (!shardComponents.isEmpty()) {
+            shards.add(writeShard(dataFolder, dataFolderName, gson,
+                    shards.size(), shardComponents));
+        }
+
+        log.info("Wrote " + componentMap.size() + " components to "
+                + shards.size() + " data files in " + dataFolder);
+        return shards;
+    }
+
+    private ReportShard writeShard(Path dataFolder, String dataFolderName,
+            Gson gson, int index, Map<String, ComponentModel> shardComponents)
+            throws IOException {
+        String fileName = "shard_" + index + ".js";
+        ReportDictionary dictionary = new ReportDictionary(shardComponents);
+
+        try (Writer writer = Files.newBufferedWriter(
+                dataFolder.resolve(fileName), UTF_8)) {
+            writer.write("bdsShardLoaded(" + index + ", ");
+            writeJson(writer, gson, dictionary.getComponents());
+            writer.write(", ");
+            writeJson(writer, gson, dictionary.getLicenses());
+            writer.write(", ");
+            writeJson(writer, gson, dictionary.getCopyrights());
+            writer.write(");\n");
+        }
+
+        ReportShard shard = new ReportShard();
+        // Relative to the report page
+        shard.file = dataFolderName + "/" + fileName;
+        shard.names = new ArrayList<String>(shardComponents.size());
+        for (ComponentModel component : shardComponents.values()) {
+            shard.names.add(component.getName());
+        }
+        return shard;
+    }
+
+    private void writeScript(Writer writer, Gson gson, String prefix,
+            Object data, String suffix) throws IOException {
+        writer.write("\n<script>");
+        writer.write(prefix);
+        writeJson(writer, gson, data);
+        writer.write(suffix);
+        writer.write("</script>");
+    }
+
+    private void writeJson(Writer writer, Gson gson, Object data)
+            throws IOException {
+        // Serialized straight into the report, the writer stays open
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        gson.toJson(data, data.getClass(), jsonWriter);
+        jsonWriter.flush();
+    }
+
+    /**
+     * A data file of a sharded report. The component names let the report
+     * page list and search the components before their data is loaded.
+     */
+    private static class ReportShard {
+
+        @Expose
+        private String file;
+
+        @Expose
+        private List<String> names;
     }
 
     /**
@@ -141,21 +265,22 @@ public class NRTReportGenerator {
      * @return Returns the String that was written out.
      */
     public String generateJSONFromObject(Object collection) {
-        StringBuilder sb = new StringBuilder();
+        StringWriter writer = new StringWriter();
 
         try {
-            Gson gson = new GsonBuilder().setPrettyPrinting()
-                    .excludeFieldsWithoutExposeAnnotation().create();
-            sb.append(gson.toJson(collection));
+            ReportJson.getGson(false).toJson(collection, writer);
         } catch (Exception e) {
             log.error("Error while generating JSON", e);
         }
 
-        return sb.toString();
+        return writer.toString();
     }
 
     /**
-     * Generates Text output alongside the HTML
+     * Generates Text output alongside the HTML, a file per component. The
+     * files are written concurrently, except for files whose names only differ
+     * by case: they are the same file on a case-insensitive file system and
+     * are written one after the other, in report order.
      * 
      * @param projectName
      * @param outputFilename
@@ -163,70 +288,207 @@ public class NRTReportGenerator {
      */
     public void generateTextReport(String projectName) throws Exception {
 
-        PrintStream outputTextFile = null;
-        FileOutputStream outputStream = null;
-
+        String textFilePrefix = projectName + "_text_files\\";
         try {
-            File dir = new File(projectName + "_text_files\\");
+            File dir = new File(textFilePrefix);
             dir.mkdirs();
         } catch (SecurityException e) {
             log.error("Unable to create directory for file output", e);
         }
 
-        for (String compKey : componentMap.keySet()) {
-            ComponentModel model = componentMap.get(compKey);
+        // Files are grouped by their name in lower case. Within a group, a
+        // component with the same name and version as the one before it
+        // shares its file, the last one wins.
+        Map<String, List<Map.Entry<String, ComponentModel>>> textFiles = new LinkedHashMap<String, List<Map.Entry<String, ComponentModel>>>();
+        for (ComponentModel model : componentMap.values()) {
+            String name = model.getName() + "_" + model.getVersion();
+            String fileName = textFilePrefix + name + ".txt";
+            String groupName = fileName.toLowerCase(Locale.ENGLISH);
+            List<Map.Entry<String, ComponentModel>> group = textFiles
+                    .get(groupName);
+            if (group == null) {
+                group = new ArrayList<Map.Entry<String, ComponentModel>>(1);
+                textFiles.put(groupName, group);
+            } else if (group.get(group.size() - 1).getKey().equals(fileName)) {
+                group.remove(group.size() - 1);
+            } else {
+                log.warn("Text file names only differ by case, writing them one after the other: "
+                        + group.get(group.size() - 1).getKey() + ", "
+                        + fileName);
+            }
+            group.add(new AbstractMap.SimpleEntry<String, ComponentModel>(
+                    fileName, model));
+        }
 
-            try {
-                String name = model.getName() + "_" + model.getVersion();
+        ExecutorService textFileExecutor = Executors.newFixedThreadPool(Math
+                .max(1, Math.min(nrtConfig.getTextFileThreads(),
+                        textFiles.size())));
+        Map<String, Future<?>> writes = new LinkedHashMap<String, Future<?>>();
+        try {
+            for (final List<Map.Entry<String, ComponentModel>> group : textFiles
+                    .values()) {
+                writes.put(group.get(0).getKey(),
+                        textFileExecutor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException {
+                                for (Map.Entry<String, ComponentModel> textFile : group) {
+                                    writeTextFile(textFile.getKey(),
+                                            textFile.getValue());
+                                }
+                                return null;
+                            }
+                        }));
+            }
+
+            int failures = 0;
+            for (Map.Entry<String, Future<?>> write : writes.entrySet()) {
+                try {
+                    write.getValue().get();
+                } catch (ExecutionException e) {
+                    log.error("Unable to write text file: " + write.getKey(),
+                            e.getCause());
+                    failures++;
+                }
+            }
+
+            if (failures > 0) {
+                throw new Exception("Unable to write " + failures + " of "
+                        + writes.size() + " text files");
+            }
+        } finally {
+            textFileExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates a single NOTICE file: a section per component in report
+     * order, referring to its licenses by number, followed by an appendix
+     * holding every distinct license text once. The file is written as it is
+     * generated.
+     * 
+     * @param noticeFile
+     * @param projectName
+     * @throws IOException
+     */
+    public void generateNoticeFile(File noticeFile, String projectName)
+            throws IOException {
+        ReportDictionary dictionary = new ReportDictionary(componentMap);
+        List<LicenseModel> licenses = dictionary.getLicenses();
+        List<String> copyrights = dictionary.getCopyrights();
+
+        try (BufferedWriter notice = Files.newBufferedWriter(
+                noticeFile.toPath(), UTF_8)) {
+            writeLine(notice, "NOTICES for project: " + projectName);
+            notice.newLine();
+            writeLine(notice,
+                    "This project includes the components listed below. The texts of their");
+            writeLine(notice, "licenses follow the components.");
+
+            for (EncodedComponent component : dictionary.getComponents()
+                    .values()) {
+                notice.newLine();
+                writeLine(notice, NOTICE_SEPARATOR);
+                String componentName = component.getName();
+                if (nrtConfig.isShowComponentVersion()
+                        && component.getVersion() != null) {
+                    componentName = componentName + " "
+                            + component.getVersion();
+                }
+                writeLine(notice, componentName);
+                if (component.getHomePage() != null) {
+                    writeLine(notice, "Home page: " + component.getHomePage());
+                }
+
+                notice.newLine();
+                writeLine(notice, "Licenses:");
+                if (component.getLicenses() != null) {
+                    for (Integer license : component.getLicenses()) {
+                        writeLine(notice, "    [" + (license + 1) + "] "
+                                + getNoticeLicenseName(licenses.get(license),
+                                        license));
+                    }
+                }
+
+                if (nrtConfig.isShowCopyrights()
+                        && component.getCopyrights() != null) {
+                    notice.newLine();
+                    writeLine(notice, "Copyrights:");
+                    for (Integer copyright : component.getCopyrights()) {
+                        writeLine(notice, "    " + copyrights.get(copyright));
+                    }
+                }
 
-                outputStream = new FileOutputStream(projectName
-                        + "_text_files\\" + name + ".txt");
+                if (nrtConfig.isShowFilePaths()
+                        && component.getPaths() != null) {
+                    notice.newLine();
+                    writeLine(notice, "File paths:");
+                    for (String path : component.getPaths()) {
+                        writeLine(notice, "    " + path);
+                    }
+                }
+            }
 
-                outputTextFile = new PrintStream(outputStream);
-            } catch (FileNotFoundException e) {
-                outputStream.close();
-                outputTextFile.close();
-                log.error("File not found: " + e.getMessage());
+            notice.newLine();
+            writeLine(notice, NOTICE_SEPARATOR);
+            writeLine(notice, "License texts (" + licenses.size() + ")");
+            for (int license = 0; license < licenses.size(); license++) {
+                LicenseModel licenseModel = licenses.get(license);
+                notice.newLine();
+                writeLine(notice, NOTICE_SEPARATOR);
+                writeLine(notice, "[" + (license + 1) + "] "
+                        + getNoticeLicenseName(licenseModel, license));
+                notice.newLine();
+                if (licenseModel.getText() != null) {
+                    writeLine(notice,
+                            licenseTextSanitizer.sanitize(licenseModel));
+                }
             }
+        }
+
+        log.info("Wrote " + componentMap.size() + " components and "
+                + licenses.size() + " distinct licenses to " + noticeFile);
+    }
+
+    private String getNoticeLicenseName(LicenseModel license, int index) {
+        return license.getName() != null ? license.getName()
+                : "License file " + (index + 1);
+    }
+
+    private void writeTextFile(String fileName, ComponentModel model)
+            throws IOException {
+        try (BufferedWriter outputTextFile = Files.newBufferedWriter(
+                Paths.get(fileName), UTF_8)) {
 
             // Add copyrights, filepaths and license text into the next column.
             /**
              * Write out the file paths
              */
-            writeOutFilePaths(compKey, outputTextFile);
+            writeOutFilePaths(model, outputTextFile);
 
             /**
              * Write out all the copy rights
              */
-            writeOutCopyrights(compKey, outputTextFile);
+            writeOutCopyrights(model, outputTextFile);
 
             /**
              * Write out all the licenses
              */
-            writeOutLicenseText(compKey, outputTextFile);
-
-        } // For all component names
-
-        // Close the stream
-        outputStream.close();
-        outputTextFile.close();
+            writeOutLicenseText(model, outputTextFile);
+        }
     }
 
-    private void writeOutLicenseText(String componentName,
-            PrintStream outputTextFile) {
+    private void writeOutLicenseText(ComponentModel model,
+            BufferedWriter outputTextFile) {
         try {
-            outputTextFile.println();
-            outputTextFile
-                    .println("License texts ("
-                            + (componentMap.get(componentName).getLicenses() != null ? componentMap
-                                    .get(componentName).getLicenses().size()
-                                    : "0") + ")");
+            Set<LicenseModel> licenses = model.getLicenseModels();
+            outputTextFile.newLine();
+            writeLine(outputTextFile, "License texts ("
+                    + (licenses != null ? licenses.size() : "0") + ")");
 
             int licenseCounter = 0;
-            if (componentMap.get(componentName).getLicenses() != null) {
+            if (licenses != null) {
 
-                for (LicenseModel license : componentMap.get(componentName)
-                        .getLicenseModels()) {
+                for (LicenseModel license : licenses) {
 
                     String licenseName = license.getName() != null ? license
                             .getName() + "(Taken from KnowledgeBase)"
@@ -234,15 +496,12 @@ public class NRTReportGenerator {
                                     + "(Taken from scanned file)";
 
                     if (nrtConfig.isTextFileOutput()) {
-                        outputTextFile.println();
-                        outputTextFile
-                                .println("==========================================================================");
-                        outputTextFile.println(licenseName);
-                        outputTextFile.print(StringEscapeUtils
-                                .unescapeHtml(Jsoup.clean(license.getText(),
-                                        "", Whitelist.none(),
-                                        new Document.OutputSettings()
-                                                .prettyPrint(false))));
+                        outputTextFile.newLine();
+                        writeLine(outputTextFile,
+                                "==========================================================================");
+                        writeLine(outputTextFile, licenseName);
+                        outputTextFile.write(licenseTextSanitizer
+                                .sanitize(license));
                     }
                     licenseCounter++;
                 } // for all licenses
@@ -253,24 +512,20 @@ public class NRTReportGenerator {
         }
     }
 
-    private void writeOutCopyrights(String componentName,
-            PrintStream outputTextFile) {
+    private void writeOutCopyrights(ComponentModel model,
+            BufferedWriter outputTextFile) {
         try {
             if (nrtConfig.isShowCopyrights()) {
 
-                outputTextFile.println();
-                outputTextFile
-                        .println("copyrights ("
-                                + (componentMap.get(componentName)
-                                        .getCopyrights() != null ? componentMap
-                                        .get(componentName).getCopyrights()
-                                        .size() : "0") + ")");
+                Set<String> copyrights = model.getCopyrights();
+                outputTextFile.newLine();
+                writeLine(outputTextFile, "copyrights ("
+                        + (copyrights != null ? copyrights.size() : "0") + ")");
 
-                if (componentMap.get(componentName).getCopyrights() != null) {
+                if (copyrights != null) {
 
-                    for (String copyright : componentMap.get(componentName)
-                            .getCopyrights()) {
-                        outputTextFile.println(copyright);
+                    for (String copyright : copyrights) {
+                        writeLine(outputTextFile, copyright);
                     }
                 }
             }
@@ -280,22 +535,21 @@ public class NRTReportGenerator {
 
     }
 
-    private void writeOutFilePaths(String compKey, PrintStream outputTextFile) {
+    private void writeOutFilePaths(ComponentModel model,
+            BufferedWriter outputTextFile) {
 
         if (nrtConfig.isShowFilePaths()) {
             try {
-                outputTextFile
-                        .println("file paths ("
-                                + (componentMap.get(compKey).getPaths() != null ? componentMap
-                                        .get(compKey).getPaths().size()
-                                        : "0") + ")");
-                Set<String> paths = componentMap.get(compKey).getPaths();
+                Set<String> paths = model.getPaths();
+                writeLine(outputTextFile, "file paths ("
+                        + (paths != null ? paths.size() : "0") + ")");
                 if (paths != null) {
-                    for (String path : componentMap.get(compKey).getPaths()) {
-                        outputTextFile.println(path);
+                    for (String path : paths) {
+                        writeLine(outputTextFile, path);
                     }
                 } else {
-                    log.info("No paths available for component key: " + compKey);
+                    log.info("No paths available for component: "
+                            + model.getNameAndVersion());
                 }
 
             } // try
@@ -307,4 +561,10 @@ public class NRTReportGenerator {
         }
 
     }
+
+    private static void writeLine(BufferedWriter writer, String line)
+            throws IOException {
+        writer.write(line);
+        writer.newLine();
+    }
 }
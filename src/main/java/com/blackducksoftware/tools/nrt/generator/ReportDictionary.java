@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.google.gson.annotations.Expose;
+
+/**
+ * Dictionary encoded form of the report data. Every distinct license and
+ * copyright is held once in a table, components refer to them by their index
+ * in the table. The same license text is typically used by hundreds of
+ * components, so this keeps it from being repeated in the report.
+ * 
+ */
+public class ReportDictionary {
+
+    private final Map<String, EncodedComponent> components = new LinkedHashMap<String, EncodedComponent>();
+
+    private final List<LicenseModel> licenses = new ArrayList<LicenseModel>();
+
+    private final List<String> copyrights = new ArrayList<String>();
+
+    private final Map<LicenseKey, Integer> licenseIndexes = new HashMap<LicenseKey, Integer>();
+
+    private final Map<String, Integer> copyrightIndexes = new HashMap<String, Integer>();
+
+    /**
+     * A component of the report, with its licenses and copyrights replaced by
+     * their indexes. Serialized under the same names as the component model.
+     */
+    public static class EncodedComponent {
+
+        @Expose
+        private String componentId;
+
+        @Expose
+        private String name;
+
+        @Expose
+        private String version;
+
+        @Expose
+        private String homePage;
+
+        @Expose
+        private Set<String> paths;
+
+        @Expose
+        private List<Integer> copyrights;
+
+        @Expose
+        private List<Integer> licenses;
+
+        public String getComponentId() {
+            return componentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getHomePage() {
+            return homePage;
+        }
+
+        public Set<String> getPaths() {
+            return paths;
+        }
+
+        public List<Integer> getCopyrights() {
+            return copyrights;
+        }
+
+        public List<Integer> getLicenses() {
+            return licenses;
+        }
+    }
+
+    /**
+     * Licenses are only the same if id, name and text all match, license
+     * files included from the project share an id across different texts.
+     */
+    private static class LicenseKey {
+
+        private final LicenseModel license;
+
+        private LicenseKey(LicenseModel license) {
+            this.license = license;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LicenseKey)) {
+                return false;
+            }
+            LicenseModel otherLicense = ((LicenseKey) other).license;
+            return equal(license.getId(), otherLicense.getId())
+                    && equal(license.getName(), otherLicense.getName())
+                    && equal(license.getText(), otherLicense.getText());
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 1;
+            result = 31 * result + hash(license.getId());
+            result = 31 * result + hash(license.getName());
+            result = 31 * result + hash(license.getText());
+            return result;
+        }
+
+        private static boolean equal(String first, String second) {
+            return first == null ? second == null : first.equals(second);
+        }
+
+        private static int hash(String value) {
+            return value == null ? 0 : value.hashCode();
+        }
+    }
+
+    /**
+     * @param componentMap
+     *            the components in report order
+     */
+    public ReportDictionary(Map<String, ComponentModel> componentMap) {
+        for (Map.Entry<String, ComponentModel> entry : componentMap.entrySet()) {
+            components.put(entry.getKey(), encode(entry.getValue()));
+        }
+    }
+
+    private EncodedComponent encode(ComponentModel model) {
+        EncodedComponent component = new EncodedComponent();
+        component.componentId = model.getComponentId();
+        component.name = model.getName();
+        component.version = model.getVersion();
+        component.homePage = model.getHomePage();
+        component.paths = model.getPaths();
+
+        if (model.getCopyrights() != null) {
+            component.copyrights = new ArrayList<Integer>(model
+                    .getCopyrights().size());
+            for (String copyright : model.getCopyrights()) {
+                component.copyrights.add(getCopyrightIndex(copyright));
+            }
+        }
+
+        if (model.getLicenseModels() != null) {
+            component.licenses = new ArrayList<Integer>(model
+                    .getLicenseModels().size());
+            for (LicenseModel license : model.getLicenseModels()) {
+                component.licenses.add(getLicenseIndex(license));
+            }
+        }
+
+        return component;
+    }
+
+    private Integer getLicenseIndex(LicenseModel license) {
+        LicenseKey key = new LicenseKey(license);
+        Integer index = licenseIndexes.get(key);
+        if (index == null) {
+            index = licenses.size();
+            licenses.add(license);
+            licenseIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    private Integer getCopyrightIndex(String copyright) {
+        Integer index = copyrightIndexes.get(copyright);
+        if (index == null) {
+            index = copyrights.size();
+            copyrights.add(copyright);
+            copyrightIndexes.put(copyright, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return The encoded components, keyed and ordered like the component
+     *         map
+     */
+    public Map<String, EncodedComponent> getComponents() {
+        return components;
+    }
+
+    /**
+     * @return Every distinct license, indexed by the components
+     */
+    public List<LicenseModel> getLicenses() {
+        return licenses;
+    }
+
+    /**
+     * @return Every distinct copyright, indexed by the components
+     */
+    public List<String> getCopyrights() {
+        return copyrights;
+    }
+}
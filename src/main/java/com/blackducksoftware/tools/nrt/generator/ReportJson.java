@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.blackducksoftware.tools.nrt.generator.ReportDictionary.EncodedComponent;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The Gson instances the report data is serialized with. They are built once
+ * and shared, Gson is thread safe.
+ * 
+ * The report models are written by hand written adapters instead of by
+ * reflection. The adapters write the exposed fields in declaration order and
+ * leave out nulls, so the output is the same as the reflective one. The
+ * encoded components are never read back by the tool, reading them falls back
+ * to reflection.
+ * 
+ */
+public final class ReportJson {
+
+    private static final Gson PRETTY = create(true);
+
+    private static final Gson COMPACT = create(false);
+
+    private ReportJson() {
+    }
+
+    /**
+     * @param compact
+     *            true to leave out all indentation and line breaks
+     * @return The shared Gson for the report data
+     */
+    public static Gson getGson(boolean compact) {
+        return compact ? COMPACT : PRETTY;
+    }
+
+    private static Gson create(boolean pretty) {
+        LicenseModelAdapter licenseAdapter = new LicenseModelAdapter();
+        GsonBuilder builder = new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapter(LicenseModel.class, licenseAdapter)
+                .registerTypeAdapter(ComponentModel.class,
+                        new ComponentModelAdapter(licenseAdapter))
+                .registerTypeAdapterFactory(new EncodedComponentAdapterFactory());
+        if (pretty) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
+    }
+
+    private static void writeString(JsonWriter out, String name, String value)
+            throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeStrings(JsonWriter out, String name,
+            Collection<String> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static void writeIntegers(JsonWriter out, String name,
+            Collection<Integer> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (Integer value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Set<String> readStrings(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Set<String> values = new LinkedHashSet<String>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    static final class LicenseModelAdapter extends TypeAdapter<LicenseModel> {
+
+        @Override
+        public void write(JsonWriter out, LicenseModel license)
+                throws IOException {
+            if (license == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "id", license.getId());
+            writeString(out, "name", license.getName());
+            writeString(out, "text", license.getText());
+            out.endObject();
+        }
+
+        @Override
+        public LicenseModel read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            LicenseModel license = new LicenseModel();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("id".equals(name)) {
+                    license.setId(readString(in));
+                } else if ("name".equals(name)) {
+                    license.setName(readString(in));
+                } else if ("text".equals(name)) {
+                    license.setText(readString(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return license;
+        }
+    }
+
+    static final class ComponentModelAdapter extends
+            TypeAdapter<ComponentModel> {
+
+        private final LicenseModelAdapter licenseAdapter;
+
+        ComponentModelAdapter(LicenseModelAdapter licenseAdapter) {
+            this.licenseAdapter = licenseAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, ComponentModel component)
+                throws IOException {
+            if (component == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "componentId", component.getComponentId());
+            writeString(out, "name", component.getName());
+            writeString(out, "version", component.getVersion());
+            writeString(out, "homePage", component.getHomePage());
+            writeStrings(out, "paths", component.getPaths());
+            writeStrings(out, "copyrights", component.getCopyrights());
+            Set<LicenseModel> licenses = component.getLicenseModels();
+            if (licenses != null) {
+                out.name("licenses").beginArray();
+                for (LicenseModel license : licenses) {
+                    licenseAdapter.write(out, license);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ComponentModel read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ComponentModel component = new ComponentModel();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("componentId".equals(name)) {
+                    component.setComponentId(readString(in));
+                } else if ("name".equals(name)) {
+                    component.setName(readString(in));
+                } else if ("version".equals(name)) {
+                    component.setVersion(readString(in));
+                } else if ("homePage".equals(name)) {
+                    component.setHomePage(readString(in));
+                } else if ("paths".equals(name)) {
+                    component.setPaths(readStrings(in));
+                } else if ("copyrights".equals(name)) {
+                    component.setCopyrights(readStrings(in));
+                } else if ("licenses".equals(name)
+                        && in.peek() == JsonToken.BEGIN_ARRAY) {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        LicenseModel license = licenseAdapter.read(in);
+                        if (license != null) {
+                            component.addNewLicense(license);
+                        }
+                    }
+                    in.endArray();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return component;
+        }
+    }
+
+    /**
+     * The encoded components only exist to be written into the report, they
+     * are written by hand and read by the reflective adapter Gson would
+     * otherwise use.
+     */
+    static final class EncodedComponentAdapterFactory implements
+            TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != EncodedComponent.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new EncodedComponentAdapter(
+                    gson.getDelegateAdapter(this,
+                            TypeToken.get(EncodedComponent.class)));
+        }
+    }
+
+    static final class EncodedComponentAdapter extends
+            TypeAdapter<EncodedComponent> {
+
+        private final TypeAdapter<EncodedComponent> reflectiveAdapter;
+
+        EncodedComponentAdapter(
+                TypeAdapter<EncodedComponent> reflectiveAdapter) {
+            this.reflectiveAdapter = reflectiveAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, EncodedComponent component)
+                throws IOException {
+            if (component == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "componentId", component.getComponentId());
+            writeString(out, "name", component.getName());
+            writeString(out, "version", component.getVersion());
+            writeString(out, "homePage", component.getHomePage());
+            writeStrings(out, "paths", component.getPaths());
+            writeIntegers(out, "copyrights", component.getCopyrights());
+            writeIntegers(out, "licenses", component.getLicenses());
+            out.endObject();
+        }
+
+        @Override
+        public EncodedComponent read(JsonReader in) throws IOException {
+            return reflectiveAdapter.read(in);
+        }
+    }
+}
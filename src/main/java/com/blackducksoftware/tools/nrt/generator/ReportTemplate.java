@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
+import com.blackducksoftware.tools.nrt.config.NRTConstants;
+
+/**
+ * An HTML report template, split at the JSON data block into the part before
+ * and the part after the data.
+ * 
+ * Templates are read from the classpath and split once per JVM, every report
+ * rendered afterwards reuses the same segments. A template without a data
+ * block is rejected when it is loaded.
+ * 
+ * The script that renders the components is shared by the templates, a
+ * template refers to it with a script tag that is replaced by the script
+ * itself. The reports stay single, self-contained files.
+ * 
+ */
+public final class ReportTemplate {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Opening tag of the div the JSON data goes into, and the end of a div
+    private static final Pattern JSON_DATA_BLOCK_START = Pattern.compile(
+            "<div[^>]*\\bclass\\s*=\\s*[\"']?[^\"'>]*\\b"
+                    + NRTConstants.HTML_JSON_DATA_BLOCK + "\\b[^>]*>",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DIV_END = Pattern.compile("</div\\s*>",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern RENDERING_SCRIPT = Pattern.compile(
+            "<script\\s+src\\s*=\\s*[\"']?"
+                    + Pattern.quote(NRTConstants.HTML_RENDERING_SCRIPT_FILE)
+                    + "[\"']?\\s*>\\s*</script\\s*>",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final ConcurrentMap<String, ReportTemplate> templates = new ConcurrentHashMap<String, ReportTemplate>();
+
+    private final byte[] prefix;
+
+    private final byte[] suffix;
+
+    private ReportTemplate(byte[] prefix, byte[] suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return The template for reports of the given configuration, sharded
+     *         reports have their own index page
+     * @throws IOException
+     *             if the template is missing or has no data block
+     */
+    public static ReportTemplate forConfig(NRTConfigurationManager nrtConfig)
+            throws IOException {
+        return get(nrtConfig.getHtmlShardSize() > 0 ? NRTConstants.HTML_SHARDED_TEMPLATE_FILE
+                : NRTConstants.HTML_TEMPLATE_FILE);
+    }
+
+    /**
+     * @param resourceName
+     *            the template on the classpath
+     * @return The template, loaded on first use
+     * @throws IOException
+     *             if the template is missing or has no data block
+     */
+    public static ReportTemplate get(String resourceName) throws IOException {
+        ReportTemplate template = templates.get(resourceName);
+        if (template == null) {
+            template = load(resourceName);
+            ReportTemplate existing = templates.putIfAbsent(resourceName,
+                    template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private static ReportTemplate load(String resourceName) throws IOException {
+        String template = readResource(resourceName);
+        Matcher renderingScript = RENDERING_SCRIPT.matcher(template);
+        if (renderingScript.find()) {
+            template = template.substring(0, renderingScript.start())
+                    + "<script>\n"
+                    + readResource(NRTConstants.HTML_RENDERING_SCRIPT_FILE)
+                    + "</script>" + template.substring(renderingScript.end());
+        }
+
+        // Anything inside the block is dropped, in case the user
+        // populated the template incorrectly with data
+        Matcher dataBlockStart = JSON_DATA_BLOCK_START.matcher(template);
+        if (!dataBlockStart.find()) {
+            throw new IOException(
+                    "Unable to find a valid critical DIV inside HTML template "
+                            + resourceName + ": "
+                            + NRTConstants.HTML_JSON_DATA_BLOCK);
+        }
+        Matcher dataBlockEnd = DIV_END.matcher(template);
+        int dataEnd = dataBlockEnd.find(dataBlockStart.end()) ? dataBlockEnd
+                .start() : dataBlockStart.end();
+
+        return new ReportTemplate(template.substring(0, dataBlockStart.end())
+                .getBytes(UTF_8), template.substring(dataEnd).getBytes(UTF_8));
+    }
+
+    private static String readResource(String resourceName)
+            throws IOException {
+        try (InputStream in = ReportTemplate.class.getClassLoader()
+                .getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IOException("Unable to find HTML template: "
+                        + resourceName);
+            }
+            return new String(IOUtils.toByteArray(in), UTF_8);
+        }
+    }
+
+    /**
+     * Writes the template up to and including the opening tag of the data
+     * block.
+     */
+    public void writePrefix(OutputStream out) throws IOException {
+        out.write(prefix);
+    }
+
+    /**
+     * Writes the template from the end of the data block on.
+     */
+    public void writeSuffix(OutputStream out) throws IOException {
+        out.write(suffix);
+    }
+}
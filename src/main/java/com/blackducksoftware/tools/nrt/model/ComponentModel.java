@@ -22,10 +22,10 @@
  *******************************************************************************/
 package com.blackducksoftware.tools.nrt.model;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -59,11 +59,13 @@ public class ComponentModel extends ProtexComponentPojo {
     @Expose
     private Set<String> paths;
 
+    // Insertion ordered sets, components can carry tens of thousands of
+    // copyrights
     @Expose
-    private List<String> copyrights;
+    private Set<String> copyrights;
 
     @Expose
-    private List<LicenseModel> licenses;
+    private Set<LicenseModel> licenses;
 
     // Attributes
     private Map<String, CustomAttributeBean> attributeMap = new HashMap<String, CustomAttributeBean>();
@@ -100,26 +102,16 @@ public class ComponentModel extends ProtexComponentPojo {
 
     public void addNewLicense(LicenseModel license) {
         if (licenses == null) {
-            licenses = new ArrayList<LicenseModel>();
-            licenses.add(license);
-        } else {
-            if (!licenses.contains(license)) {
-                licenses.add(license);
-            }
+            licenses = new LinkedHashSet<LicenseModel>();
         }
-
+        licenses.add(license);
     }
 
     public void addNewCopyright(String copyright) {
         if (copyrights == null) {
-            copyrights = new ArrayList<String>();
-            copyrights.add(copyright);
-        } else {
-            if (!copyrights.contains(copyright)) {
-                copyrights.add(copyright);
-            }
+            copyrights = new LinkedHashSet<String>();
         }
-
+        copyrights.add(copyright);
     }
 
     public void addNewPath(String path) {
@@ -134,6 +126,20 @@ public class ComponentModel extends ProtexComponentPojo {
 
     }
 
+    /**
+     * Adds all of the paths. A component without paths takes a copy of the
+     * set, sharing its path store instead of copying every path string.
+     * 
+     * @param newPaths
+     */
+    public void addNewPaths(PathSet newPaths) {
+        if (paths == null) {
+            paths = new PathSet(newPaths);
+        } else {
+            paths.addAll(newPaths);
+        }
+    }
+
     /**
      * Concatenated Name and Version
      * 
@@ -161,12 +167,17 @@ public class ComponentModel extends ProtexComponentPojo {
         this.paths = paths;
     }
 
-    public List<String> getCopyrights() {
+    /**
+     * @return The copyrights in the order they were added, null if there are
+     *         none
+     */
+    public Set<String> getCopyrights() {
         return copyrights;
     }
 
-    public void setCopyrights(List<String> copyrights) {
-        this.copyrights = copyrights;
+    public void setCopyrights(Collection<String> copyrights) {
+        this.copyrights = copyrights == null ? null
+                : new LinkedHashSet<String>(copyrights);
     }
 
     @Override
@@ -212,11 +223,12 @@ public class ComponentModel extends ProtexComponentPojo {
     }
 
     /**
-     * Returns a list of licenses specific to this Component Model.
+     * Returns the licenses specific to this Component Model, in the order they
+     * were added.
      * 
      * @return
      */
-    public List<LicenseModel> getLicenseModels()
+    public Set<LicenseModel> getLicenseModels()
     {
         return licenses;
     }
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds a SHA-1 hex digest over a sequence of strings. Values are
+ * separated, so ("ab", "c") and ("a", "bc") do not produce the same digest,
+ * and null is distinct from the empty string.
+ * 
+ */
+public class ContentDigest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    public ContentDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Guaranteed by the platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public ContentDigest update(String value) {
+        if (value == null) {
+            digest.update((byte) 1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            // A length prefix keeps the value boundaries unambiguous
+            int length = bytes.length;
+            digest.update(new byte[] { 0, (byte) (length >>> 24),
+                    (byte) (length >>> 16), (byte) (length >>> 8),
+                    (byte) length });
+            digest.update(bytes);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the digest, the instance may not be updated afterwards.
+     * 
+     * @return
+     */
+    public String toHex() {
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public static String of(String... values) {
+        ContentDigest contentDigest = new ContentDigest();
+        for (String value : values) {
+            contentDigest.update(value);
+        }
+        return contentDigest.toHex();
+    }
+}
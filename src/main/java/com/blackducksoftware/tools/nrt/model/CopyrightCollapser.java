@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collapses copyright statements that only differ in whitespace, years or
+ * some of the surrounding context into a single statement.
+ * 
+ * Statements are first compared exactly, with whitespace canonicalized and the
+ * years masked out. Remaining statements are compared by the overlap of their
+ * word shingles, found through minhash signatures, and collapsed if they are
+ * similar enough, name the same holder and have as many runs of years: the
+ * words following the copyright marker must be the same. Statements with
+ * different holders are never collapsed, however similar their context is.
+ * 
+ * Collapsed statements keep the text of the first one seen, with each run of
+ * years replaced by the years of the same run of all of them, "2001-2005,
+ * 2008". Years never move from one run, and so one holder, to another.
+ * 
+ */
+public class CopyrightCollapser {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Comment decoration left over from the context around a statement
+    private static final Pattern DECORATION = Pattern
+            .compile("^[\\s*/#;!<>=-]+|[\\s*/#;!<>=-]+$");
+
+    // A run of years, "2001", "2001-2005" or "2001, 2003 - 2005"
+    private static final Pattern YEAR_RUN = Pattern
+            .compile("(?<!\\d)(?:19|20)\\d{2}(?:\\s*[-,]\\s*(?:19|20)\\d{2}(?!\\d))*(?!\\d)");
+
+    private static final Pattern YEAR = Pattern
+            .compile("((?:19|20)\\d{2})(?:\\s*-\\s*((?:19|20)\\d{2}))?");
+
+    private static final Pattern MARKER = Pattern.compile(
+            "copyright|\\(c\\)|\u00a9", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\\r?\\n|\\r");
+
+    private static final String MASKED_YEARS = "#";
+
+    // The holder is looked for in this many words after the marker
+    private static final int HOLDER_WORDS = 8;
+
+    // Longer ranges are kept as their two ends
+    private static final int MAX_RANGE = 100;
+
+    private static final int SHINGLE_SIZE = 3;
+
+    // Signature rows per band, and bands. Statements sharing a band are
+    // compared, with 80% overlap that happens 98.5% of the time.
+    private static final int ROWS = 4;
+
+    private static final int BANDS = 8;
+
+    private final double similarity;
+
+    // Statements in the order they were first seen
+    private final List<Statement> statements = new ArrayList<Statement>();
+
+    // Statement of every distinct masked text seen so far
+    private final Map<String, Statement> statementsByKey = new HashMap<String, Statement>();
+
+    private final Map<Long, List<Statement>> statementsByBand = new HashMap<Long, List<Statement>>();
+
+    private int added = 0;
+
+    /**
+     * @param similarity
+     *            Share of word shingles two statements must have in common to
+     *            be collapsed, between 0 and 1
+     */
+    public CopyrightCollapser(double similarity) {
+        this.similarity = similarity;
+    }
+
+    public void add(String copyright) {
+        if (copyright == null) {
+            return;
+        }
+        String text = normalize(copyright);
+        if (text.isEmpty()) {
+            return;
+        }
+        added++;
+
+        String key = getKey(text);
+        Statement statement = statementsByKey.get(key);
+        if (statement == null) {
+            int[] shingles = getShingles(key);
+            int[] signature = getSignature(shingles);
+            String holder = getHolder(copyright, key);
+            int yearRuns = getYearRuns(text).size();
+
+            statement = findSimilar(holder, yearRuns, shingles, signature);
+            if (statement == null) {
+                statement = new Statement(text, holder, yearRuns, shingles);
+                statements.add(statement);
+                for (int band = 0; band < BANDS; band++) {
+                    Long bandKey = getBandKey(signature, band);
+                    List<Statement> bandStatements = statementsByBand
+                            .get(bandKey);
+                    if (bandStatements == null) {
+                        bandStatements = new ArrayList<Statement>(1);
+                        statementsByBand.put(bandKey, bandStatements);
+                    }
+                    bandStatements.add(statement);
+                }
+            }
+            statementsByKey.put(key, statement);
+        }
+        statement.merge(text);
+    }
+
+    /**
+     * @return The collapsed statements, in the order they were first seen
+     */
+    public List<String> getCopyrights() {
+        List<String> copyrights = new ArrayList<String>(statements.size());
+        for (Statement statement : statements) {
+            copyrights.add(statement.getText());
+        }
+        return copyrights;
+    }
+
+    /**
+     * @return Number of statements added that were collapsed into another one
+     */
+    public int getCollapsedCount() {
+        return added - statements.size();
+    }
+
+    private Statement findSimilar(String holder, int yearRuns,
+            int[] shingles, int[] signature) {
+        Statement best = null;
+        double bestSimilarity = similarity;
+        Set<Statement> compared = Collections
+                .newSetFromMap(new IdentityHashMap<Statement, Boolean>());
+        for (int band = 0; band < BANDS; band++) {
+            List<Statement> candidates = statementsByBand.get(getBandKey(
+                    signature, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Statement candidate : candidates) {
+                if (!compared.add(candidate)
+                        || !candidate.holder.equals(holder)
+                        || candidate.years.size() != yearRuns) {
+                    continue;
+                }
+                double candidateSimilarity = getJaccard(shingles,
+                        candidate.shingles);
+                if (candidateSimilarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = candidateSimilarity;
+                }
+            }
+        }
+        return best;
+    }
+
+    static String normalize(String copyright) {
+        String text = WHITESPACE.matcher(copyright).replaceAll(" ");
+        return DECORATION.matcher(text).replaceAll("");
+    }
+
+    private static List<String> getYearRuns(String text) {
+        List<String> yearRuns = new ArrayList<String>(1);
+        Matcher yearRun = YEAR_RUN.matcher(text);
+        while (yearRun.find()) {
+            yearRuns.add(yearRun.group());
+        }
+        return yearRuns;
+    }
+
+    private static String getKey(String text) {
+        return YEAR_RUN.matcher(text).replaceAll(MASKED_YEARS)
+                .toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The words following each copyright marker, up to the end of the
+     * sentence. The whole statement if there is no marker.
+     */
+    private static String getHolder(String copyright, String key) {
+        StringBuilder holder = new StringBuilder();
+        for (String line : LINE_BREAK.split(copyright)) {
+            Matcher marker = MARKER.matcher(line);
+            if (!marker.find()) {
+                continue;
+            }
+            String[] words = normalize(line.substring(marker.start())).split(
+                    " ");
+            for (int i = 0; i < words.length && i < HOLDER_WORDS; i++) {
+                holder.append(words[i]).append(' ');
+                if (words[i].endsWith(".") && i + 1 < words.length
+                        && !words[i + 1].isEmpty()
+                        && Character.isUpperCase(words[i + 1].charAt(0))) {
+                    break;
+                }
+            }
+            holder.append('\n');
+        }
+        return holder.length() > 0 ? getKey(holder.toString()) : key;
+    }
+
+    /**
+     * @return Sorted hashes of the word shingles of the key
+     */
+    private static int[] getShingles(String key) {
+        String[] words = key.split(" ");
+        Set<Integer> shingles = new HashSet<Integer>();
+        if (words.length < SHINGLE_SIZE) {
+            shingles.add(key.hashCode());
+        } else {
+            for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+                int hash = 0;
+                for (int j = i; j < i + SHINGLE_SIZE; j++) {
+                    hash = 31 * hash + words[j].hashCode();
+                }
+                shingles.add(hash);
+            }
+        }
+
+        int[] sorted = new int[shingles.size()];
+        int i = 0;
+        for (Integer shingle : shingles) {
+            sorted[i++] = shingle;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int[] getSignature(int[] shingles) {
+        int[] signature = new int[ROWS * BANDS];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int shingle : shingles) {
+            for (int i = 0; i < signature.length; i++) {
+                // Every row hashes with its own seed
+                int hash = mix(shingle ^ (0x9e3779b9 * (i + 1)));
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static Long getBandKey(int[] signature, int band) {
+        int hash = 0;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            hash = 31 * hash + signature[row];
+        }
+        return ((long) band << 32) | (hash & 0xffffffffL);
+    }
+
+    private static double getJaccard(int[] first, int[] second) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (first.length + second.length - common);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static class Statement {
+
+        private final String text;
+
+        private final String holder;
+
+        private final int[] shingles;
+
+        // Years of every collapsed statement, per run of years in the text
+        private final List<TreeSet<Integer>> years;
+
+        private int count = 0;
+
+        private Statement(String text, String holder, int yearRuns,
+                int[] shingles) {
+            this.text = text;
+            this.holder = holder;
+            this.shingles = shingles;
+            years = new ArrayList<TreeSet<Integer>>(yearRuns);
+            for (int i = 0; i < yearRuns; i++) {
+                years.add(new TreeSet<Integer>());
+            }
+        }
+
+        private void merge(String other) {
+            count++;
+            List<String> yearRuns = getYearRuns(other);
+            if (yearRuns.size() != years.size()) {
+                // Only when a "#" in the text looked like masked years, the
+                // runs cannot be told apart
+                return;
+            }
+            for (int i = 0; i < yearRuns.size(); i++) {
+                Matcher yearMatcher = YEAR.matcher(yearRuns.get(i));
+                while (yearMatcher.find()) {
+                    int from = Integer.parseInt(yearMatcher.group(1));
+                    int to = yearMatcher.group(2) != null ? Integer
+                            .parseInt(yearMatcher.group(2)) : from;
+                    if (to >= from && to - from <= MAX_RANGE) {
+                        for (int year = from; year <= to; year++) {
+                            years.get(i).add(year);
+                        }
+                    } else {
+                        years.get(i).add(from);
+                        years.get(i).add(to);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The first text seen, each run of years replaced by the years of the
+         * same run of every collapsed statement
+         */
+        private String getText() {
+            if (count < 2 || years.isEmpty()) {
+                return text;
+            }
+            StringBuilder merged = new StringBuilder(text.length());
+            Matcher yearRun = YEAR_RUN.matcher(text);
+            int end = 0;
+            for (TreeSet<Integer> runYears : years) {
+                if (!yearRun.find()) {
+                    break;
+                }
+                merged.append(text, end, yearRun.start());
+                merged.append(runYears.isEmpty() ? yearRun.group()
+                        : formatYears(runYears));
+                end = yearRun.end();
+            }
+            merged.append(text, end, text.length());
+            return merged.toString();
+        }
+
+        private static String formatYears(TreeSet<Integer> years) {
+            StringBuilder formatted = new StringBuilder();
+            Integer rangeStart = null;
+            Integer previous = null;
+            for (Integer year : years) {
+                if (previous != null && year == previous + 1) {
+                    previous = year;
+                    continue;
+                }
+                appendRange(formatted, rangeStart, previous);
+                rangeStart = year;
+                previous = year;
+            }
+            appendRange(formatted, rangeStart, previous);
+            return formatted.toString();
+        }
+
+        private static void appendRange(StringBuilder formatted, Integer from,
+                Integer to) {
+            if (from == null) {
+                return;
+            }
+            if (formatted.length() > 0) {
+                formatted.append(", ");
+            }
+            formatted.append(from);
+            if (!from.equals(to)) {
+                formatted.append('-').append(to);
+            }
+        }
+    }
+}
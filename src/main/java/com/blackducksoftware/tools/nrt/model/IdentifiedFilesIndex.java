@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Index over the identified files report. Holds the paths identified to each
+ * component (keyed by name:version) as well as the reverse path to component
+ * lookup, so results fetched per path can be handed back to every component
+ * that owns the path.
+ * 
+ * Paths whose file name ends with one of the configured license file names
+ * are indexed as they are added, so license files never require a scan over
+ * all paths.
+ * 
+ * All paths are kept in a single {@link PathStore}, the per component path
+ * sets only hold path ids. The owners of a path are a chain of links in plain
+ * int arrays indexed by path id, most paths have a single owner.
+ * 
+ */
+public class IdentifiedFilesIndex {
+
+    private PathStore pathStore = new PathStore();
+
+    private final Map<String, PathSet> componentToPaths = new HashMap<String, PathSet>();
+
+    // Components owning a path are referred to by their index in here
+    private final List<String> componentKeys = new ArrayList<String>();
+
+    private final Map<String, Integer> componentIndexes = new HashMap<String, Integer>();
+
+    // Path id to its first owner link, owner links are 1 based so that zero
+    // means no owner
+    private int[] firstOwners = new int[1024];
+
+    // Owner link to the index of its component and the next link of the
+    // same path
+    private int[] ownerComponents = new int[1024];
+
+    private int[] nextOwners = new int[1024];
+
+    private int ownerCount = 0;
+
+    private PathSet allPaths = new PathSet(pathStore);
+
+    private final List<String> licenseFilenames;
+
+    // License file name to the (sorted) paths that end with it
+    private final Map<String, Set<String>> licenseFilePaths = new HashMap<String, Set<String>>();
+
+    public IdentifiedFilesIndex() {
+        this(Collections.<String> emptyList());
+    }
+
+    /**
+     * @param licenseFilenames
+     *            file names to index while paths are added
+     */
+    public IdentifiedFilesIndex(List<String> licenseFilenames) {
+        this.licenseFilenames = licenseFilenames;
+    }
+
+    /**
+     * Records a single row of the identified files report
+     * 
+     * @param componentKey
+     *            name:version of the component
+     * @param path
+     *            identified file/folder path
+     */
+    public void addIdentifiedFile(String componentKey, String path) {
+        PathSet paths = componentToPaths.get(componentKey);
+        Integer componentIndex = componentIndexes.get(componentKey);
+        if (paths == null) {
+            paths = new PathSet(pathStore);
+            componentToPaths.put(componentKey, paths);
+            componentIndex = componentKeys.size();
+            componentKeys.add(componentKey);
+            componentIndexes.put(componentKey, componentIndex);
+        }
+        paths.add(path);
+
+        int pathId = pathStore.find(path);
+        if (pathId >= firstOwners.length) {
+            firstOwners = Arrays.copyOf(firstOwners,
+                    Math.max(firstOwners.length * 2, pathId + 1));
+        }
+        if (firstOwners[pathId] == 0) {
+            allPaths.add(path);
+            indexLicenseFile(path);
+        }
+        addOwner(pathId, componentIndex);
+    }
+
+    /**
+     * Appends the component to the owners of the path, unless it owns the
+     * path already. Owners stay in the order they were added.
+     */
+    private void addOwner(int pathId, int componentIndex) {
+        int last = 0;
+        for (int link = firstOwners[pathId]; link != 0; link = nextOwners[link - 1]) {
+            if (ownerComponents[link - 1] == componentIndex) {
+                return;
+            }
+            last = link;
+        }
+
+        if (ownerCount == ownerComponents.length) {
+            ownerComponents = Arrays.copyOf(ownerComponents,
+                    ownerCount * 2);
+            nextOwners = Arrays.copyOf(nextOwners, ownerCount * 2);
+        }
+        ownerComponents[ownerCount] = componentIndex;
+        nextOwners[ownerCount] = 0;
+        int link = ++ownerCount;
+
+        if (last == 0) {
+            firstOwners[pathId] = link;
+        } else {
+            nextOwners[last - 1] = link;
+        }
+    }
+
+    /**
+     * Forgets every identified file added so far, the store included. Sets
+     * taken from the index before keep their contents.
+     */
+    public void clear() {
+        pathStore = new PathStore();
+        componentToPaths.clear();
+        componentKeys.clear();
+        componentIndexes.clear();
+        firstOwners = new int[1024];
+        ownerComponents = new int[1024];
+        nextOwners = new int[1024];
+        ownerCount = 0;
+        allPaths = new PathSet(pathStore);
+        licenseFilePaths.clear();
+    }
+
+    private void indexLicenseFile(String path) {
+        if (licenseFilenames.isEmpty()) {
+            return;
+        }
+        String fileName = FilenameUtils.getName(path);
+        for (String licenseFilename : licenseFilenames) {
+            if (fileName.endsWith(licenseFilename)) {
+                Set<String> paths = licenseFilePaths.get(licenseFilename);
+                if (paths == null) {
+                    paths = new TreeSet<String>();
+                    licenseFilePaths.put(licenseFilename, paths);
+                }
+                paths.add(path);
+            }
+        }
+    }
+
+    /**
+     * @param licenseFilename
+     * @return Sorted paths whose file name ends with the license file name,
+     *         never null.
+     */
+    public Set<String> getLicenseFilePaths(String licenseFilename) {
+        Set<String> paths = licenseFilePaths.get(licenseFilename);
+        if (paths == null) {
+            return Collections.emptySet();
+        }
+        return paths;
+    }
+
+    /**
+     * @return Every unique path matching any of the license file names
+     */
+    public Set<String> getAllLicenseFilePaths() {
+        Set<String> paths = new TreeSet<String>();
+        for (Set<String> licensePaths : licenseFilePaths.values()) {
+            paths.addAll(licensePaths);
+        }
+        return paths;
+    }
+
+    /**
+     * @param componentKey
+     * @return The paths for the component, null if the component has no
+     *         identified files.
+     */
+    public PathSet getPathsForComponent(String componentKey) {
+        return componentToPaths.get(componentKey);
+    }
+
+    /**
+     * @return The name:version keys of every component with identified files
+     */
+    public Set<String> getComponentKeys() {
+        return Collections.unmodifiableSet(componentToPaths.keySet());
+    }
+
+    /**
+     * @param path
+     * @return The name:version keys of all components owning the path, never
+     *         null.
+     */
+    public Set<String> getComponentsForPath(String path) {
+        int pathId = pathStore.find(path);
+        if (pathId == PathStore.NOT_FOUND || pathId >= firstOwners.length
+                || firstOwners[pathId] == 0) {
+            return Collections.emptySet();
+        }
+
+        int link = firstOwners[pathId];
+        if (nextOwners[link - 1] == 0) {
+            return Collections.singleton(componentKeys
+                    .get(ownerComponents[link - 1]));
+        }
+        Set<String> components = new LinkedHashSet<String>();
+        for (; link != 0; link = nextOwners[link - 1]) {
+            components.add(componentKeys.get(ownerComponents[link - 1]));
+        }
+        return Collections.unmodifiableSet(components);
+    }
+
+    /**
+     * @return Every unique identified path across all components
+     */
+    public Set<String> getAllPaths() {
+        return Collections.unmodifiableSet(allPaths);
+    }
+
+    /**
+     * @return The store holding every path of the index
+     */
+    public PathStore getPathStore() {
+        return pathStore;
+    }
+
+    public int getComponentCount() {
+        return componentToPaths.size();
+    }
+
+    public int getPathCount() {
+        return allPaths.size();
+    }
+}
@@ -46,12 +46,16 @@ public class LicenseModel {
     // Is the license, standard, custom, etc. Protex only.
     private String licenseOriginType;
 
+    // Identifies a license without an id, computed on first use
+    private transient String textDigest;
+
     public String getId() {
         return id;
     }
 
     public void setId(String id) {
         this.id = id;
+        textDigest = null;
     }
 
     public String getName() {
@@ -68,6 +72,7 @@ public class LicenseModel {
 
     public void setText(String text) {
         this.text = text;
+        textDigest = null;
     }
 
     @Override
@@ -87,19 +92,32 @@ public class LicenseModel {
 
         if (licenseModel.getId() != null && getId() != null) {
             return licenseModel.getId().equals(getId());
+        } else if (licenseModel.getId() == null && getId() == null) {
+            return licenseModel.getTextDigest().equals(getTextDigest());
         } else {
-            return licenseModel.getText().equals(getText());
+            return false;
         }
     }
 
+    /**
+     * Licenses are identified by their id, or by the digest of their text if
+     * they have none. A license must not change once it is held in a set.
+     */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result
-                + ((id == null) ? 0 : id.hashCode());
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        return result;
+        return id != null ? id.hashCode() : getTextDigest().hashCode();
+    }
+
+    /**
+     * @return A digest of the license text, the same for equal texts
+     */
+    public String getTextDigest() {
+        String digest = textDigest;
+        if (digest == null) {
+            digest = ContentDigest.of(text);
+            textDigest = digest;
+        }
+        return digest;
     }
 
     public String getLicenseOriginType() {
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of paths held in a {@link PathStore}. Only the ids of the paths are
+ * kept by the set, so any number of sets over the same store share the path
+ * strings.
+ * 
+ * Iteration rebuilds the paths and returns them in sorted order. Removal is
+ * not supported. Like any other set, it is not safe for use by multiple
+ * threads while it is being modified.
+ * 
+ */
+public class PathSet extends AbstractSet<String> {
+
+    private final PathStore store;
+
+    // Open addressing table of path id + 1, zero is free
+    private int[] table;
+
+    private int size = 0;
+
+    public PathSet(PathStore store) {
+        this.store = store;
+        table = new int[8];
+    }
+
+    /**
+     * Creates a copy of the set, sharing its store
+     * 
+     * @param paths
+     */
+    public PathSet(PathSet paths) {
+        store = paths.store;
+        table = paths.table.clone();
+        size = paths.size;
+    }
+
+    public PathStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean add(String path) {
+        return addId(store.add(path));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> paths) {
+        if (!(paths instanceof PathSet) || ((PathSet) paths).store != store) {
+            return super.addAll(paths);
+        }
+
+        // Same store, no need to go through the strings
+        boolean modified = false;
+        for (int entry : ((PathSet) paths).table) {
+            if (entry != 0) {
+                modified |= addId(entry - 1);
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public boolean contains(Object path) {
+        if (!(path instanceof String)) {
+            return false;
+        }
+        int id = store.find((String) path);
+        return id != PathStore.NOT_FOUND && containsId(id);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final String[] paths = new String[size];
+        int i = 0;
+        for (int entry : table) {
+            if (entry != 0) {
+                paths[i++] = store.get(entry - 1);
+            }
+        }
+        Arrays.sort(paths);
+
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < paths.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= paths.length) {
+                    throw new NoSuchElementException();
+                }
+                return paths[next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private boolean containsId(int id) {
+        int entry = id + 1;
+        int mask = table.length - 1;
+        for (int slot = hash(entry) & mask; table[slot] != 0; slot = (slot + 1)
+                & mask) {
+            if (table[slot] == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean addId(int id) {
+        if (containsId(id)) {
+            return false;
+        }
+        // Keep the table at most half full
+        if ((size + 1) * 2 > table.length) {
+            int[] oldTable = table;
+            table = new int[oldTable.length * 2];
+            for (int entry : oldTable) {
+                if (entry != 0) {
+                    insert(entry);
+                }
+            }
+        }
+        insert(id + 1);
+        size++;
+        return true;
+    }
+
+    private void insert(int entry) {
+        int mask = table.length - 1;
+        int slot = hash(entry) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+    }
+
+    private static int hash(int entry) {
+        int h = entry * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix compressed storage for file paths.
+ * 
+ * Paths are split into segments after every '/', and each path is stored as
+ * a node that points to the node of its parent directory plus the id of its
+ * last segment. Directory prefixes and segment strings are therefore held
+ * once, however many paths share them. Every path is identified by the id of
+ * its node, which {@link PathSet} stores instead of the path string.
+ * 
+ * The store is safe for use by multiple threads.
+ * 
+ */
+public class PathStore {
+
+    // The empty path, parent of every top level segment
+    static final int ROOT = 0;
+
+    static final int NOT_FOUND = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Interned segments
+    private final Map<String, Integer> segmentIds = new HashMap<String, Integer>();
+
+    private String[] segments = new String[256];
+
+    private int segmentCount = 0;
+
+    // Node id to the node of the parent directory and the last segment
+    private int[] parents = new int[1024];
+
+    private int[] nodeSegments = new int[1024];
+
+    private int nodeCount = 1;
+
+    // Open addressing table of (parent, segment) to child node, zero is free
+    // since the root is never a child
+    private long[] childKeys = new long[2048];
+
+    private int[] childNodes = new int[2048];
+
+    /**
+     * Stores the path if it is not stored yet.
+     * 
+     * @param path
+     * @return The id of the path
+     */
+    public int add(String path) {
+        int id = find(path);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int node = ROOT;
+            int start = 0;
+            while (start < path.length()) {
+                int end = nextSegmentEnd(path, start);
+                String segment = path.substring(start, end);
+
+                Integer segmentId = segmentIds.get(segment);
+                if (segmentId == null) {
+                    segmentId = addSegment(segment);
+                }
+
+                int child = findChild(node, segmentId);
+                if (child == NOT_FOUND) {
+                    child = addNode(node, segmentId);
+                }
+                node = child;
+                start = end;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param path
+     * @return The id of the path, {@link #NOT_FOUND} if it is not stored
+     */
+    public int find(String path) {
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            int start = 0;
+            while (start < path.length()) {
+                int end = nextSegmentEnd(path, start);
+                Integer segmentId = segmentIds.get(path.substring(start, end));
+                if (segmentId == null) {
+                    return NOT_FOUND;
+                }
+                node = findChild(node, segmentId);
+                if (node == NOT_FOUND) {
+                    return NOT_FOUND;
+                }
+                start = end;
+            }
+            return node;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the path with the given id
+     * 
+     * @param id
+     * @return
+     */
+    public String get(int id) {
+        lock.readLock().lock();
+        try {
+            if (id < 0 || id >= nodeCount) {
+                throw new IllegalArgumentException("Unknown path id: " + id);
+            }
+
+            int length = 0;
+            for (int node = id; node != ROOT; node = parents[node]) {
+                length += segments[nodeSegments[node]].length();
+            }
+
+            char[] path = new char[length];
+            int end = length;
+            for (int node = id; node != ROOT; node = parents[node]) {
+                String segment = segments[nodeSegments[node]];
+                end -= segment.length();
+                segment.getChars(0, segment.length(), path, end);
+            }
+            return new String(path);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of stored nodes, that is paths and their parent
+     *         directories
+     */
+    public int getNodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of distinct segments
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segmentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A segment runs up to and including the next '/', or to the end of the
+     * path.
+     */
+    private static int nextSegmentEnd(String path, int start) {
+        int separator = path.indexOf('/', start);
+        return separator == -1 ? path.length() : separator + 1;
+    }
+
+    private int addSegment(String segment) {
+        if (segmentCount == segments.length) {
+            String[] grown = new String[segments.length * 2];
+            System.arraycopy(segments, 0, grown, 0, segmentCount);
+            segments = grown;
+        }
+        segments[segmentCount] = segment;
+        segmentIds.put(segment, segmentCount);
+        return segmentCount++;
+    }
+
+    private int addNode(int parent, int segmentId) {
+        if (nodeCount == parents.length) {
+            int[] grownParents = new int[parents.length * 2];
+            System.arraycopy(parents, 0, grownParents, 0, nodeCount);
+            parents = grownParents;
+            int[] grownSegments = new int[nodeSegments.length * 2];
+            System.arraycopy(nodeSegments, 0, grownSegments, 0, nodeCount);
+            nodeSegments = grownSegments;
+        }
+        int node = nodeCount++;
+        parents[node] = parent;
+        nodeSegments[node] = segmentId;
+
+        // Keep the table at most half full
+        if (nodeCount * 2 > childKeys.length) {
+            growChildTable();
+        }
+        putChild(childKey(parent, segmentId), node);
+        return node;
+    }
+
+    private int findChild(int parent, int segmentId) {
+        long key = childKey(parent, segmentId);
+        int mask = childKeys.length - 1;
+        for (int slot = hash(key) & mask; childNodes[slot] != 0; slot = (slot + 1)
+                & mask) {
+            if (childKeys[slot] == key) {
+                return childNodes[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private void putChild(long key, int node) {
+        int mask = childKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (childNodes[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+    }
+
+    private void growChildTable() {
+        long[] oldKeys = childKeys;
+        int[] oldNodes = childNodes;
+        childKeys = new long[oldKeys.length * 2];
+        childNodes = new int[oldNodes.length * 2];
+        for (int slot = 0; slot < oldNodes.length; slot++) {
+            if (oldNodes[slot] != 0) {
+                putChild(oldKeys[slot], oldNodes[slot]);
+            }
+        }
+    }
+
+    private static long childKey(int parent, int segmentId) {
+        return ((long) parent << 32) | (segmentId & 0xffffffffL);
+    }
+
+    private static int hash(long key) {
+        // Spread the bits, parents and segment ids are both sequential
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
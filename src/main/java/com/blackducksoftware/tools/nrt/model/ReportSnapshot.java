@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+
+/**
+ * The enriched components of a previous run, each with the fingerprint of the
+ * data it was enriched from. A component whose fingerprint has not changed
+ * since can be reused as is.
+ * 
+ * The settings fingerprint covers the configuration that shapes the
+ * enrichment, a snapshot taken with different settings must not be used.
+ * 
+ * Components are kept without their paths, the fingerprint already covers
+ * them and the current run has them anyway. Every distinct license is kept
+ * once, components refer to it by its index in the snapshot.
+ * 
+ */
+public class ReportSnapshot {
+
+    // Snapshots in any other format are not used
+    private static final int FORMAT_VERSION = 2;
+
+    private static final Gson GSON = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation().create();
+
+    @Expose
+    private int formatVersion;
+
+    @Expose
+    private String settingsFingerprint;
+
+    @Expose
+    private List<LicenseModel> licenses = new ArrayList<LicenseModel>();
+
+    @Expose
+    private Map<String, SnapshotEntry> components = new HashMap<String, SnapshotEntry>();
+
+    // Index of every license in the snapshot, by id and text
+    private transient Map<String, Integer> licenseIndexes = new HashMap<String, Integer>();
+
+    private static class SnapshotEntry {
+
+        @Expose
+        private String fingerprint;
+
+        @Expose
+        private String componentId;
+
+        @Expose
+        private String name;
+
+        @Expose
+        private String version;
+
+        @Expose
+        private String homePage;
+
+        @Expose
+        private Collection<String> copyrights;
+
+        @Expose
+        private List<Integer> licenseIds;
+    }
+
+    // For deserialization
+    private ReportSnapshot() {
+    }
+
+    public ReportSnapshot(String settingsFingerprint) {
+        this.formatVersion = FORMAT_VERSION;
+        this.settingsFingerprint = settingsFingerprint;
+    }
+
+    public String getSettingsFingerprint() {
+        return settingsFingerprint;
+    }
+
+    /**
+     * @param componentKey
+     * @param fingerprint
+     * @return The component of the snapshot without paths, null if the
+     *         snapshot does not hold it or it was taken from different data.
+     *         Components of the same snapshot share their licenses.
+     */
+    public ComponentModel getComponent(String componentKey, String fingerprint) {
+        SnapshotEntry entry = components.get(componentKey);
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            return null;
+        }
+
+        ComponentModel component = new ComponentModel();
+        component.setComponentId(entry.componentId);
+        component.setName(entry.name);
+        component.setVersion(entry.version);
+        component.setHomePage(entry.homePage);
+        component.setCopyrights(entry.copyrights);
+        if (entry.licenseIds != null) {
+            for (Integer licenseId : entry.licenseIds) {
+                component.addNewLicense(licenses.get(licenseId));
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Records the component, its paths are left out.
+     * 
+     * @param componentKey
+     * @param fingerprint
+     * @param component
+     */
+    public void putComponent(String componentKey, String fingerprint,
+            ComponentModel component) {
+        SnapshotEntry entry = new SnapshotEntry();
+        entry.fingerprint = fingerprint;
+        entry.componentId = component.getComponentId();
+        entry.name = component.getName();
+        entry.version = component.getVersion();
+        entry.homePage = component.getHomePage();
+        entry.copyrights = component.getCopyrights();
+        if (component.getLicenseModels() != null) {
+            entry.licenseIds = new ArrayList<Integer>(component
+                    .getLicenseModels().size());
+            for (LicenseModel license : component.getLicenseModels()) {
+                entry.licenseIds.add(getLicenseIndex(license));
+            }
+        }
+        components.put(componentKey, entry);
+    }
+
+    public int getComponentCount() {
+        return components.size();
+    }
+
+    private Integer getLicenseIndex(LicenseModel license) {
+        // License files attached by name share their id, so the text
+        // tells them apart
+        String key = license.getId() + "\n" + license.getTextDigest();
+        Integer index = licenseIndexes.get(key);
+        if (index == null) {
+            index = licenses.size();
+            licenses.add(license);
+            licenseIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param snapshotFile
+     * @return The snapshot, null if there is none
+     * @throws IOException
+     *             if the snapshot cannot be read
+     */
+    public static ReportSnapshot load(File snapshotFile) throws IOException {
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+
+        ReportSnapshot snapshot;
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                new FileInputStream(snapshotFile)), "UTF-8")) {
+            snapshot = GSON.fromJson(reader, ReportSnapshot.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Unable to parse snapshot: " + snapshotFile,
+                    e);
+        }
+        if (snapshot == null || snapshot.formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format: "
+                    + snapshotFile);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replaces the snapshot file, a failure leaves the previous snapshot in
+     * place.
+     * 
+     * @param snapshotFile
+     * @throws IOException
+     */
+    public void save(File snapshotFile) throws IOException {
+        File temp = File.createTempFile("snapshot", ".tmp", snapshotFile
+                .getAbsoluteFile().getParentFile());
+        try {
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                    new FileOutputStream(temp)), "UTF-8")) {
+                GSON.toJson(this, writer);
+            }
+            Files.move(temp.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+// Renders the components of a notice report, shared by the report templates.
+// The report generator inlines this file into every report it writes.
+
+function toggle(id) {
+	var ele = document.getElementById(id);
+
+	if (ele.style.display == "block") {
+		ele.style.display = "none";
+	} else {
+		ele.style.display = "block";
+	}
+}
+
+function escapeText(text) {
+	if (text == null)
+		return "";
+	return String(text).replace(/&/g, "&amp;").replace(/</g, "&lt;").replace(
+			/>/g, "&gt;").replace(/"/g, "&quot;");
+}
+
+// Builds the table row of a component, licenses and copyrights are indexes
+// into the given lists
+function buildRow(component, counter, licenses, copyrights) {
+	// Because it is a map get the actual object
+	var properties = propList[0];
+	var showFilePaths = properties.show_file_paths;
+	var showCopyrights = properties.show_copyrights;
+
+	var html = [];
+	html.push("<tr id=component_" + counter + ">");
+	// Component column
+	// Check to see if user enabled to show version
+	var componentName = escapeText(component.name);
+	if (properties.show_component_version)
+		componentName = componentName + ":" + escapeText(component.version);
+	html.push("<td><div class='component-name'>" + componentName
+			+ "</div></td>");
+
+	var componentCopyrights = resolveEntries(component.copyrights, copyrights);
+	var componentLicenses = resolveEntries(component.licenses, licenses);
+
+	// Attribute column
+	html.push("<td><div class=attributes>");
+	buildLinkedItems(html, showFilePaths, component.paths, counter, "Paths",
+			"file-paths-link");
+	buildLinkedItems(html, showCopyrights, componentCopyrights, counter,
+			"Copyrights", "copyrights-link");
+	// There will never be an option to not show them
+	buildLinkedItems(html, true, componentLicenses, counter, "Licenses",
+			"license-text-link");
+	// Add homepage link if available
+	if (component.homePage != null) {
+		html.push("<div class='homepage-link'><a href='"
+				+ escapeText(component.homePage)
+				+ "' target=_new> Homepage</a></div>");
+	}
+	html.push("</div></td>");
+
+	// Copyright column
+	html.push("<td>");
+	if (componentCopyrights != null && componentCopyrights.length > 0) {
+		buildLinkedItems(html, showCopyrights, componentCopyrights, counter,
+				"CopyrightList", "copyrights-link");
+	}
+	html.push("</td>");
+	html.push("</tr>");
+	return html.join("");
+}
+
+// Looks up the dictionary entries of a component
+function resolveEntries(references, dictionary) {
+	if (references == null)
+		return references;
+
+	var entries = [];
+	for (var r = 0; r < references.length; r++) {
+		entries.push(dictionary[references[r]]);
+	}
+	return entries;
+}
+
+function buildLinkedItems(html, isShow, elementList, counter, elementName,
+		cssName) {
+	if (!isShow)
+		return;
+
+	// Display how many in the parentheses
+	// Use the element name to build iterative IDs
+	var elementCount = elementList != null ? elementList.length : 0;
+	var label = elementName == "CopyrightList" ? "Copyrights" : elementName;
+	html.push("<a href=javascript:toggle('" + elementName + counter + "');>"
+			+ label + " (" + elementCount + ")</a>");
+	// Create the contents
+	html.push("<div class=" + cssName + " id=" + elementName + counter
+			+ "><ul>");
+	if (elementList != null) {
+		for (var p = 0; p < elementList.length; p++) {
+			var elementItem = elementList[p];
+
+			// Licenses
+			if (typeof elementItem == 'object')
+				buildLicenseText(html, elementItem, counter, p);
+			else
+				html.push("<li>" + escapeText(elementItem) + "</li>");
+		}
+	} else {
+		html.push("<li>No " + label + " exist for this component</li>");
+	}
+	html.push("</ul></div><br>");
+}
+
+// Use a counter to make sure that links open up the correct divs
+function buildLicenseText(html, license, counter, internalcounter) {
+	// Link for license
+	var uniqueid = "";
+	if (license.id == null) {
+		uniqueid = counter + "_" + internalcounter;
+	} else
+		uniqueid = license.id + "_" + counter;
+
+	html.push("<li><a href=javascript:toggle('" + uniqueid + "');>"
+			+ escapeText(license.name) + "</a>");
+	// License text, it is HTML
+	html.push("<div class='license-text' id='" + uniqueid + "'>"
+			+ license.text + "</div></li>");
+}
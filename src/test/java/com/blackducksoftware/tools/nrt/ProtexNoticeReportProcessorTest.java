@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.tools.commonframework.core.config.ConfigConstants.APPLICATION;
+import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
+import com.blackducksoftware.tools.nrt.datasource.FakeProtexDataSource;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Tests the Protex processing against a server in memory
+ * 
+ */
+public class ProtexNoticeReportProcessorTest
+{
+    private static String configFileName = "nrt_config_basic_protex.properties";
+
+    @Rule
+    public TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordingIsReplayed() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(20, 6);
+        File cache = junitWorkingFolder.newFolder("cache");
+        File recording = junitWorkingFolder.newFolder("recording");
+
+        // Every response is cached before the recording run, none of them
+        // may be missing from the recording
+        NRTConfigurationManager recordConfig = createConfig();
+        recordConfig.setCacheLocation(cache.getAbsolutePath());
+        new ProtexNoticeReportProcessor(recordConfig, server).processProject(FakeProtexDataSource.PROJECT_NAME);
+        recordConfig.setProtexRecordLocation(recording.getAbsolutePath());
+        HashMap<String, ComponentModel> recorded = new ProtexNoticeReportProcessor(recordConfig, server)
+                .processProject(FakeProtexDataSource.PROJECT_NAME);
+
+        NRTConfigurationManager replayConfig = createConfig();
+        replayConfig.setProtexReplayLocation(recording.getAbsolutePath());
+        HashMap<String, ComponentModel> replayed = new ProtexNoticeReportProcessor(replayConfig)
+                .processProject(FakeProtexDataSource.PROJECT_NAME);
+
+        Assert.assertEquals(20, recorded.size());
+        Assert.assertEquals(recorded.keySet(), replayed.keySet());
+        for (String key : recorded.keySet()) {
+            ComponentModel expected = recorded.get(key);
+            ComponentModel actual = replayed.get(key);
+            Assert.assertEquals(7, actual.getPaths().size());
+            Assert.assertEquals(expected.getPaths(), actual.getPaths());
+            Assert.assertEquals(3, actual.getCopyrights().size());
+            Assert.assertEquals(new ArrayList<String>(expected.getCopyrights()),
+                    new ArrayList<String>(actual.getCopyrights()));
+            Assert.assertEquals(describe(expected), describe(actual));
+            Assert.assertEquals(2, actual.getLicenseModels().size());
+        }
+    }
+
+    private NRTConfigurationManager createConfig() throws Exception
+    {
+        String configFile = ClassLoader.getSystemResource(configFileName).getFile();
+        NRTConfigurationManager config = new NRTConfigurationManager(configFile, APPLICATION.PROTEX,
+                FakeProtexDataSource.PROJECT_NAME);
+        config.setShowFilePaths(true);
+        config.setShowCopyrights(true);
+        config.setCopyrightPatterns(Arrays.asList("Copyright"));
+        config.setIncludeLicenseFilenamesInReport(true);
+        config.setLicenseFilenames(Arrays.asList("LICENSE"));
+        return config;
+    }
+
+    private List<String> describe(ComponentModel component)
+    {
+        List<String> licenses = new ArrayList<String>();
+        for (LicenseModel license : component.getLicenseModels()) {
+            licenses.add(license.getId() + " " + license.getName() + " " + license.getText());
+        }
+        return licenses;
+    }
+}
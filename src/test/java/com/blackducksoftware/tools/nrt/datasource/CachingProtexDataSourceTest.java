@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Tests the on-disk cache of Protex responses
+ * 
+ */
+public class CachingProtexDataSourceTest
+{
+    private static final long MAX_SIZE = 1024L * 1024L * 1024L;
+
+    @Rule
+    public TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    @Test
+    public void testResponsesAreReused() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(5, 4);
+        File cacheRoot = junitWorkingFolder.newFolder("cache");
+        readProject(new CachingProtexDataSource(server, cacheRoot, MAX_SIZE));
+        int serverCalls = server.calls.get();
+
+        CachingProtexDataSource cache = new CachingProtexDataSource(server, cacheRoot, MAX_SIZE);
+        IdentifiedFilesIndex identifiedFiles = readProject(cache);
+
+        // Only the project itself is looked up again
+        Assert.assertEquals(serverCalls + 1, server.calls.get());
+        Assert.assertEquals(5 * 5, identifiedFiles.getPathCount());
+        Assert.assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testUnreadableIdentifiedFilesEntryIsAMiss() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(50, 40);
+        File cacheRoot = junitWorkingFolder.newFolder("cache");
+        readProject(new CachingProtexDataSource(server, cacheRoot, MAX_SIZE));
+
+        // Broken half way through, after some of its rows
+        File entry = EntryFiles.getEntryFile(new File(new File(cacheRoot, FakeProtexDataSource.PROJECT_ID),
+                CachingProtexDataSource.getScanState(server.getProjectByName(FakeProtexDataSource.PROJECT_NAME))),
+                "identified_files");
+        byte[] content = Files.readAllBytes(entry.toPath());
+        Files.write(entry.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        CachingProtexDataSource cache = new CachingProtexDataSource(server, cacheRoot, MAX_SIZE);
+        IdentifiedFilesIndex identifiedFiles = readProject(cache);
+
+        Assert.assertEquals(50 * 41, identifiedFiles.getPathCount());
+        Assert.assertEquals(50, identifiedFiles.getComponentCount());
+        Assert.assertEquals(1, identifiedFiles.getComponentsForPath("/src/component7/dir1/File1.java").size());
+        Assert.assertTrue(cache.getMisses() > 0);
+
+        // Written again from the server response
+        Assert.assertEquals(50 * 41, readProject(new CachingProtexDataSource(server, cacheRoot, MAX_SIZE))
+                .getPathCount());
+        Assert.assertTrue(Files.size(entry.toPath()) > content.length / 2);
+    }
+
+    @Test
+    public void testChangedIdentificationsAreAMiss() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(5, 4);
+        File cacheRoot = junitWorkingFolder.newFolder("cache");
+        readProject(new CachingProtexDataSource(server, cacheRoot, MAX_SIZE));
+        int serverCalls = server.calls.get();
+
+        // Same scan, identifications changed since
+        server.lastModifiedDate = "2016-05-03";
+        server.components.remove(0);
+        CachingProtexDataSource cache = new CachingProtexDataSource(server, cacheRoot, MAX_SIZE);
+        readProject(cache);
+
+        Assert.assertEquals(2 * serverCalls, server.calls.get());
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(4, cache.getComponents(FakeProtexDataSource.PROJECT_ID).size());
+    }
+
+    @Test
+    public void testBomIsNotCachedWithoutLastModifiedDate() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(5, 4);
+        server.lastModifiedDate = null;
+        File cacheRoot = junitWorkingFolder.newFolder("cache");
+        CachingProtexDataSource cache = new CachingProtexDataSource(server, cacheRoot, MAX_SIZE);
+        readProject(cache);
+        cache.getFileText(FakeProtexDataSource.PROJECT_ID, "/src/component0/LICENSE");
+        int serverCalls = server.calls.get();
+
+        readProject(cache);
+        cache.getFileText(FakeProtexDataSource.PROJECT_ID, "/src/component0/LICENSE");
+
+        // The project, its components and identified files, the file text is
+        // still cached
+        Assert.assertEquals(serverCalls + 3, server.calls.get());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testCachedComponentsShareLicenses() throws Exception
+    {
+        FakeProtexDataSource server = new FakeProtexDataSource(5, 4);
+        File cacheRoot = junitWorkingFolder.newFolder("cache");
+        readProject(new CachingProtexDataSource(server, cacheRoot, MAX_SIZE));
+
+        CachingProtexDataSource cache = new CachingProtexDataSource(server, cacheRoot, MAX_SIZE);
+        cache.getProjectByName(FakeProtexDataSource.PROJECT_NAME);
+        List<ComponentModel> components = cache.getComponents(FakeProtexDataSource.PROJECT_ID);
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(5, components.size());
+        // Components 0 and 3 have the same license
+        LicenseModel license = components.get(0).getLicenseModels().iterator().next();
+        Assert.assertEquals("license_0", license.getId());
+        Assert.assertEquals("<p>Text of license 0</p>", license.getText());
+        Assert.assertSame(license, components.get(3).getLicenseModels().iterator().next());
+        Assert.assertEquals("Component 3", components.get(3).getName());
+        Assert.assertEquals("1.3", components.get(3).getVersion());
+
+        // Also when the components are read again
+        Assert.assertSame(license, cache.getComponents(FakeProtexDataSource.PROJECT_ID).get(0).getLicenseModels()
+                .iterator().next());
+    }
+
+    private IdentifiedFilesIndex readProject(CachingProtexDataSource cache) throws Exception
+    {
+        cache.getProjectByName(FakeProtexDataSource.PROJECT_NAME);
+        cache.getComponents(FakeProtexDataSource.PROJECT_ID);
+        IdentifiedFilesIndex identifiedFiles = new IdentifiedFilesIndex();
+        cache.readIdentifiedFiles(FakeProtexDataSource.PROJECT_ID, identifiedFiles);
+        return identifiedFiles;
+    }
+}
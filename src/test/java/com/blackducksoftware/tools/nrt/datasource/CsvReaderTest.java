@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the row by row CSV parsing used for report sections
+ * 
+ */
+public class CsvReaderTest
+{
+
+    @Test
+    public void testPlainRows() throws IOException
+    {
+        CsvReader reader = new CsvReader(new StringReader("a,b,c\r\n1,,3\n"));
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), reader.readRow());
+        Assert.assertEquals(Arrays.asList("1", "", "3"), reader.readRow());
+        Assert.assertNull(reader.readRow());
+        reader.close();
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException
+    {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\"comma, inside\",\"say \"\"hi\"\"\",\"two\nlines\"\nlast"));
+
+        Assert.assertEquals(Arrays.asList("comma, inside", "say \"hi\"", "two\nlines"), reader.readRow());
+        Assert.assertEquals(Arrays.asList("last"), reader.readRow());
+        Assert.assertNull(reader.readRow());
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnterminatedQuote() throws IOException
+    {
+        CsvReader reader = new CsvReader(new StringReader("\"open"));
+        reader.readRow();
+    }
+}
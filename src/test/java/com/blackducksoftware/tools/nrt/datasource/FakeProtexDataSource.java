@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.blackducksoftware.sdk.protex.common.StringSearchPattern;
+import com.blackducksoftware.sdk.protex.common.StringSearchPatternOriginType;
+import com.blackducksoftware.sdk.protex.project.codetree.discovery.StringSearchDiscovery;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.IdentifiedFilesIndex;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * A Protex server in memory, with one project. Counts the calls it answers.
+ * 
+ */
+public class FakeProtexDataSource implements IProtexDataSource
+{
+    public static final String PROJECT_ID = "c_project";
+
+    public static final String PROJECT_NAME = "Project";
+
+    public static final String PATTERN_ID = "pattern_1";
+
+    public final AtomicInteger calls = new AtomicInteger();
+
+    public String analyzedDate = "2016-05-01";
+
+    // Null for a server that does not tell
+    public String lastModifiedDate = "2016-05-02";
+
+    public final List<ComponentModel> components = new ArrayList<ComponentModel>();
+
+    // Component key to its identified paths
+    public final Map<String, List<String>> identifiedFiles = new LinkedHashMap<String, List<String>>();
+
+    public final Map<String, String> fileTexts = new HashMap<String, String>();
+
+    // Discovered path to its copyright matches
+    public final Map<String, List<String>> matches = new HashMap<String, List<String>>();
+
+    public final StringSearchPattern pattern = new StringSearchPattern();
+
+    /**
+     * @param componentCount
+     *            every component gets a license, pathsPerComponent paths, a
+     *            license file and copyright matches in half of its paths
+     * @param pathsPerComponent
+     */
+    public FakeProtexDataSource(int componentCount, int pathsPerComponent)
+    {
+        pattern.setStringSearchPatternId(PATTERN_ID);
+        pattern.setName("Copyright");
+        pattern.setOriginType(StringSearchPatternOriginType.STANDARD);
+
+        for (int i = 0; i < componentCount; i++) {
+            ComponentModel component = new ComponentModel();
+            component.setComponentId("comp_" + i);
+            component.setName("Component " + i);
+            component.setVersion("1." + i);
+            LicenseModel license = new LicenseModel();
+            license.setId("license_" + (i % 3));
+            license.setName("License " + (i % 3));
+            license.setText("<p>Text of license " + (i % 3) + "</p>");
+            component.addNewLicense(license);
+            components.add(component);
+
+            List<String> paths = new ArrayList<String>();
+            for (int j = 0; j < pathsPerComponent; j++) {
+                String path = "/src/component" + i + "/dir" + (j % 4) + "/File" + j + ".java";
+                paths.add(path);
+                if (j % 2 == 0) {
+                    List<String> pathMatches = new ArrayList<String>();
+                    pathMatches.add("Copyright 20" + (10 + j % 10) + " Holder " + i);
+                    matches.put(path, pathMatches);
+                }
+            }
+            String licensePath = "/src/component" + i + "/LICENSE";
+            paths.add(licensePath);
+            fileTexts.put(licensePath, "License file of component " + i);
+            identifiedFiles.put(component.getName() + ":" + component.getVersion(), paths);
+        }
+    }
+
+    @Override
+    public ProtexProject getProjectByName(String projectName) throws Exception
+    {
+        calls.incrementAndGet();
+        return PROJECT_NAME.equals(projectName) ? new ProtexProject(PROJECT_ID, PROJECT_NAME, analyzedDate,
+                lastModifiedDate) : null;
+    }
+
+    @Override
+    public List<ComponentModel> getComponents(String projectId) throws Exception
+    {
+        calls.incrementAndGet();
+        return new ArrayList<ComponentModel>(components);
+    }
+
+    @Override
+    public void readIdentifiedFiles(String projectId, IdentifiedFilesIndex index) throws Exception
+    {
+        calls.incrementAndGet();
+        for (Map.Entry<String, List<String>> entry : identifiedFiles.entrySet()) {
+            for (String path : entry.getValue()) {
+                index.addIdentifiedFile(entry.getKey(), path);
+            }
+        }
+    }
+
+    @Override
+    public StringSearchPattern getStringSearchPatternByName(String patternName) throws Exception
+    {
+        calls.incrementAndGet();
+        return pattern.getName().equals(patternName) ? pattern : null;
+    }
+
+    @Override
+    public List<StringSearchDiscovery> getStringSearchDiscoveries(String projectId, List<String> paths,
+            List<StringSearchPatternOriginType> originTypes) throws Exception
+    {
+        calls.incrementAndGet();
+        List<StringSearchDiscovery> discoveries = new ArrayList<StringSearchDiscovery>();
+        for (String path : paths) {
+            if (matches.containsKey(path)) {
+                StringSearchDiscovery discovery = new StringSearchDiscovery();
+                discovery.setFilePath(path);
+                discovery.setStringSearchId(PATTERN_ID);
+                discoveries.add(discovery);
+            }
+        }
+        return discoveries;
+    }
+
+    @Override
+    public List<String> getStringSearchMatches(String projectId, StringSearchDiscovery searchDiscovery,
+            Integer contextLength) throws Exception
+    {
+        calls.incrementAndGet();
+        return new ArrayList<String>(matches.get(searchDiscovery.getFilePath()));
+    }
+
+    @Override
+    public String getFileText(String projectId, String path) throws Exception
+    {
+        calls.incrementAndGet();
+        return fileTexts.get(path);
+    }
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.datasource;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+
+/**
+ * Tests the deadline, retries and hedging around Protex calls
+ * 
+ */
+public class GuardedProtexDataSourceTest
+{
+    private static final String LICENSE_PATH = "/src/component0/LICENSE";
+
+    @Test
+    public void testTransientFailureIsRetried() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.failures.set(2);
+        server.failure = new Exception("Connection lost", new ConnectException("Connection refused"));
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 0, 2, 1, false, 0, 4);
+
+        Assert.assertEquals("License file of component 0", guarded.getFileText(FakeProtexDataSource.PROJECT_ID,
+                LICENSE_PATH));
+        Assert.assertEquals(3, server.attempts.get());
+    }
+
+    @Test
+    public void testRetriesAreLimited() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.failures.set(Integer.MAX_VALUE);
+        server.failure = new IOException("Connection reset");
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 0, 2, 1, false, 0, 4);
+
+        try {
+            guarded.getComponents(FakeProtexDataSource.PROJECT_ID);
+            Assert.fail("The last failure should be thrown");
+        } catch (IOException e) {
+            Assert.assertEquals("Connection reset", e.getMessage());
+        }
+        Assert.assertEquals(3, server.attempts.get());
+    }
+
+    @Test
+    public void testServerErrorIsNotRetried() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.failures.set(Integer.MAX_VALUE);
+        server.failure = new Exception("No such project");
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 0, 2, 1, false, 0, 4);
+
+        try {
+            guarded.getFileText(FakeProtexDataSource.PROJECT_ID, LICENSE_PATH);
+            Assert.fail("The server error should be thrown");
+        } catch (Exception e) {
+            Assert.assertEquals("No such project", e.getMessage());
+        }
+        Assert.assertEquals(1, server.attempts.get());
+    }
+
+    @Test
+    public void testSlowCallIsAbandonedAndRetried() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.slowCalls.set(1);
+        server.delayMillis = 5000;
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 100, 1, 1, false, 0, 4);
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("License file of component 0", guarded.getFileText(FakeProtexDataSource.PROJECT_ID,
+                LICENSE_PATH));
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        Assert.assertEquals(2, server.attempts.get());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testSlowCallTimesOut() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.slowCalls.set(Integer.MAX_VALUE);
+        server.delayMillis = 500;
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 50, 1, 1, false, 0, 4);
+        guarded.getFileText(FakeProtexDataSource.PROJECT_ID, LICENSE_PATH);
+    }
+
+    @Test
+    public void testBulkCallHasNoDeadline() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.slowCalls.set(Integer.MAX_VALUE);
+        server.delayMillis = 300;
+
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 50, 2, 1, false, 0, 4);
+
+        List<ComponentModel> components = guarded.getComponents(FakeProtexDataSource.PROJECT_ID);
+        Assert.assertEquals(3, components.size());
+        Assert.assertEquals(1, server.attempts.get());
+    }
+
+    @Test
+    public void testSlowCallIsHedged() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 10000, 0, 1, true, 0, 4);
+        // Enough fast calls to know what is slow
+        for (int i = 0; i < 20; i++) {
+            guarded.getFileText(FakeProtexDataSource.PROJECT_ID, LICENSE_PATH);
+        }
+
+        server.attempts.set(0);
+        server.slowCalls.set(1);
+        server.delayMillis = 5000;
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("License file of component 0", guarded.getFileText(FakeProtexDataSource.PROJECT_ID,
+                LICENSE_PATH));
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        Assert.assertEquals(2, server.attempts.get());
+    }
+
+    @Test
+    public void testCallThreadsAreBounded() throws Exception
+    {
+        UnreliableDataSource server = new UnreliableDataSource();
+        server.slowCalls.set(Integer.MAX_VALUE);
+        server.delayMillis = 50;
+
+        final GuardedProtexDataSource guarded = new GuardedProtexDataSource(server, 10000, 0, 1, false, 0, 2);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call() throws Exception
+                    {
+                        return guarded.getFileText(FakeProtexDataSource.PROJECT_ID, LICENSE_PATH);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                Assert.assertEquals("License file of component 0", result.get());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        Assert.assertEquals(8, server.attempts.get());
+        Assert.assertEquals(2, server.maxConcurrentCalls.get());
+    }
+
+    @Test
+    public void testTransientFailures()
+    {
+        Assert.assertTrue(GuardedProtexDataSource.isTransient(new TimeoutException()));
+        Assert.assertTrue(GuardedProtexDataSource.isTransient(new RuntimeException(new ConnectException())));
+        Assert.assertFalse(GuardedProtexDataSource.isTransient(new Exception("Unable to find the columns")));
+        Assert.assertFalse(GuardedProtexDataSource.isTransient(new IllegalStateException(new Exception())));
+    }
+
+    /**
+     * Fails or answers late for as many calls as asked to
+     */
+    private static class UnreliableDataSource extends FakeProtexDataSource
+    {
+        // Including the failed and abandoned ones
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private volatile Exception failure;
+
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        private volatile long delayMillis;
+
+        private final AtomicInteger concurrentCalls = new AtomicInteger();
+
+        private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+        private UnreliableDataSource()
+        {
+            super(3, 2);
+        }
+
+        @Override
+        public List<ComponentModel> getComponents(String projectId) throws Exception
+        {
+            answer();
+            return super.getComponents(projectId);
+        }
+
+        @Override
+        public String getFileText(String projectId, String path) throws Exception
+        {
+            answer();
+            return super.getFileText(projectId, path);
+        }
+
+        private void answer() throws Exception
+        {
+            attempts.incrementAndGet();
+            int running = concurrentCalls.incrementAndGet();
+            try {
+                int max = maxConcurrentCalls.get();
+                while (running > max && !maxConcurrentCalls.compareAndSet(max, running)) {
+                    max = maxConcurrentCalls.get();
+                }
+                if (failures.getAndDecrement() > 0) {
+                    throw failure;
+                }
+                if (slowCalls.getAndDecrement() > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } finally {
+                concurrentCalls.decrementAndGet();
+            }
+        }
+    }
+}
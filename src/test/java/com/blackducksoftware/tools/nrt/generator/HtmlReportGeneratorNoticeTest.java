@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Tests the NOTICE file written from the default components, plus one that
+ * sorts before them and shares a license with them.
+ * 
+ */
+public class HtmlReportGeneratorNoticeTest extends HtmlReportGeneratorSetup {
+    private static String configFile = "nrt_config_basic.properties";
+
+    private static String FIRST_COMP_NAME = "AComponent";
+
+    @ClassRule
+    public static TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    // Lines of the NOTICE file
+    private static List<String> notice = null;
+
+    @BeforeClass
+    public static void setupFiles() throws IOException {
+        basicReportOutputLocation = junitWorkingFolder
+                .newFile("notice_test.html");
+        setupFiles(configFile, basicReportOutputLocation);
+
+        LicenseModel license = new LicenseModel();
+        license.setId("mit_id_fake");
+        license.setName("FakeMIT");
+        license.setText("This is a bunch of MIT text with some <b>HTML</b> thrown in for good measure.");
+        ComponentModel component = new ComponentModel();
+        component.setComponentId(FIRST_COMP_NAME + "0.1");
+        component.setName(FIRST_COMP_NAME);
+        component.setVersion("0.1");
+        component.addNewLicense(license);
+        testComponents.put(component.getName(), component);
+
+        configManager.setShowComponentVersion(true);
+        configManager.setShowCopyrights(true);
+        generator = new NRTReportGenerator(configManager, testComponents);
+
+        File noticeFile = junitWorkingFolder.newFile("NOTICE.txt");
+        generator.generateNoticeFile(noticeFile, "NoticeProject");
+        notice = Files.readAllLines(noticeFile.toPath(),
+                Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void testComponentSectionsAreSorted() {
+        Assert.assertEquals("NOTICES for project: NoticeProject",
+                notice.get(0));
+
+        int first = notice.indexOf(FIRST_COMP_NAME + " 0.1");
+        int second = notice.indexOf(COMP_ONE_NAME + " 1.0");
+        int third = notice.indexOf(COMP_TWO_NAME + " 2.3");
+        Assert.assertTrue(first > 0);
+        Assert.assertTrue(first < second);
+        Assert.assertTrue(second < third);
+        Assert.assertEquals("Home page: http://github.com",
+                notice.get(third + 1));
+    }
+
+    @Test
+    public void testLicensesAreReferenced() {
+        int appendix = notice.indexOf("License texts (2)");
+        Assert.assertTrue(appendix > 0);
+
+        // Every reference in a section names the license it points to in
+        // the appendix
+        List<String> references = getSection(COMP_TWO_NAME + " 2.3",
+                "Licenses:");
+        references.addAll(getSection(FIRST_COMP_NAME + " 0.1", "Licenses:"));
+        Assert.assertEquals(3, references.size());
+        for (String reference : references) {
+            Assert.assertTrue(reference.startsWith("    ["));
+            Assert.assertTrue(notice.subList(appendix, notice.size())
+                    .contains(reference.trim()));
+        }
+
+        Assert.assertEquals(getSection(FIRST_COMP_NAME + " 0.1", "Licenses:")
+                .get(0), getSection(COMP_TWO_NAME + " 2.3", "Licenses:")
+                .get(1));
+    }
+
+    @Test
+    public void testLicenseTextsAppearOnce() {
+        Assert.assertEquals(1, countLinesContaining("Fake Apache text"));
+        Assert.assertEquals(1, countLinesContaining("bunch of MIT text"));
+        Assert.assertEquals(1, countLinesContaining("] FakeApache", 0));
+        Assert.assertEquals(1, countLinesContaining("] FakeMIT", 0));
+    }
+
+    @Test
+    public void testCopyrightsAndPaths() {
+        List<String> copyrights = getSection(COMP_TWO_NAME + " 2.3",
+                "Copyrights:");
+        Assert.assertEquals(2, copyrights.size());
+        Assert.assertTrue(copyrights.contains("    Copyright Test One"));
+
+        List<String> paths = getSection(COMP_ONE_NAME + " 1.0",
+                "File paths:");
+        Assert.assertEquals(2, paths.size());
+        Assert.assertTrue(paths.contains("    //somepath//test//"));
+    }
+
+    /**
+     * @return The indented lines under the given heading of a component
+     */
+    private static List<String> getSection(String componentName,
+            String heading) {
+        List<String> lines = new ArrayList<String>();
+        int line = notice.indexOf(componentName);
+        while (line < notice.size() && !notice.get(line).equals(heading)) {
+            line++;
+        }
+        for (line++; line < notice.size()
+                && notice.get(line).startsWith("    "); line++) {
+            lines.add(notice.get(line));
+        }
+        return lines;
+    }
+
+    private static int countLinesContaining(String text) {
+        return countLinesContaining(text, notice.indexOf("License texts (2)"));
+    }
+
+    /**
+     * @return How many lines from the given one on contain the text, but do
+     *         not start with the indentation of a section entry
+     */
+    private static int countLinesContaining(String text, int from) {
+        int count = 0;
+        for (String line : notice.subList(from, notice.size())) {
+            if (line.contains(text) && !line.startsWith("    ")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
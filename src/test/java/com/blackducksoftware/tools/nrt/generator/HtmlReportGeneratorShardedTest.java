@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.tools.commonframework.core.config.ConfigConstants.APPLICATION;
+import com.blackducksoftware.tools.nrt.config.NRTConfigurationManager;
+import com.blackducksoftware.tools.nrt.config.NRTConstants;
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Tests the index page and data files of a sharded HTML report
+ * 
+ */
+public class HtmlReportGeneratorShardedTest
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    @Test
+    public void testShardsHoldTheirNameRanges() throws Exception
+    {
+        File report = junitWorkingFolder.newFile("report.html");
+        createGenerator(5, 2).generateHTMLFromTemplate(report);
+
+        String page = new String(Files.readAllBytes(report.toPath()), UTF_8);
+        Assert.assertFalse(page.contains("var compList="));
+        JsonArray shards = getShardList(page);
+        Assert.assertEquals(3, shards.size());
+
+        String[][] names = { { "Component0", "Component1" }, { "Component2", "Component3" }, { "Component4" } };
+        for (int i = 0; i < names.length; i++) {
+            JsonObject shard = shards.get(i).getAsJsonObject();
+            Assert.assertEquals("report_data/shard_" + i + ".js", shard.get("file").getAsString());
+            JsonArray shardNames = shard.get("names").getAsJsonArray();
+            Assert.assertEquals(names[i].length, shardNames.size());
+
+            String data = new String(Files.readAllBytes(new File(report.getParentFile(), shard.get("file")
+                    .getAsString()).toPath()), UTF_8);
+            Assert.assertTrue(data.startsWith("bdsShardLoaded(" + i + ", "));
+            for (int n = 0; n < names[i].length; n++) {
+                Assert.assertEquals(names[i][n], shardNames.get(n).getAsString());
+                Assert.assertTrue(data.contains("\"" + names[i][n] + "\""));
+            }
+        }
+    }
+
+    @Test
+    public void testStaleShardsAreDeleted() throws Exception
+    {
+        File report = junitWorkingFolder.newFile("report.html");
+        File dataFolder = new File(report.getParentFile(), "report_data");
+        createGenerator(5, 1).generateHTMLFromTemplate(report);
+        Assert.assertTrue(new File(dataFolder, "shard_4.js").exists());
+
+        createGenerator(3, 2).generateHTMLFromTemplate(report);
+
+        Assert.assertEquals(2, getShardList(new String(Files.readAllBytes(report.toPath()), UTF_8)).size());
+        Assert.assertTrue(new File(dataFolder, "shard_1.js").exists());
+        Assert.assertFalse(new File(dataFolder, "shard_2.js").exists());
+        Assert.assertFalse(new File(dataFolder, "shard_4.js").exists());
+    }
+
+    @Test
+    public void testRenderingScriptIsInlined() throws Exception
+    {
+        File report = junitWorkingFolder.newFile("report.html");
+        createGenerator(1, 2).generateHTMLFromTemplate(report);
+
+        String page = new String(Files.readAllBytes(report.toPath()), UTF_8);
+        Assert.assertFalse(page.contains(NRTConstants.HTML_RENDERING_SCRIPT_FILE));
+        Assert.assertTrue(page.contains("function buildRow("));
+    }
+
+    private static NRTReportGenerator createGenerator(int componentCount, int shardSize) throws Exception
+    {
+        NRTConfigurationManager configManager = new NRTConfigurationManager(ClassLoader.getSystemResource(
+                "nrt_config_basic.properties").getFile(), APPLICATION.PROTEX, null);
+        configManager.setHtmlShardSize(shardSize);
+
+        TreeMap<String, ComponentModel> components = new TreeMap<String, ComponentModel>();
+        for (int i = 0; i < componentCount; i++) {
+            LicenseModel license = new LicenseModel();
+            license.setId("license_" + (i % 2));
+            license.setName("License " + (i % 2));
+            license.setText("Text of license " + (i % 2));
+
+            ComponentModel component = new ComponentModel();
+            component.setComponentId("comp_" + i);
+            component.setName("Component" + i);
+            component.setVersion("1." + i);
+            component.addNewLicense(license);
+            component.addNewCopyright("Copyright 2016 Holder " + i);
+            components.put(component.getName(), component);
+        }
+        return new NRTReportGenerator(configManager, components);
+    }
+
+    private static JsonArray getShardList(String page)
+    {
+        int start = page.indexOf("var shardList=");
+        Assert.assertTrue(start >= 0);
+        start += "var shardList=".length();
+        return new JsonParser().parse(page.substring(start, page.indexOf("</script>", start))).getAsJsonArray();
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.tools.nrt.model.ComponentModel;
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Tests the text file written per component, against the layout of the files
+ * written one after the other before they were written concurrently.
+ * 
+ */
+public class HtmlReportGeneratorTextTest extends HtmlReportGeneratorSetup {
+    private static String configFile = "nrt_config_basic.properties";
+
+    private static final String SEPARATOR = "==========================================================================";
+
+    @ClassRule
+    public static TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    private static String textFilePrefix = null;
+
+    @BeforeClass
+    public static void setupFiles() throws Exception {
+        basicReportOutputLocation = junitWorkingFolder
+                .newFile("text_test.html");
+        setupFiles(configFile, basicReportOutputLocation);
+
+        // The twin has the same name and version as ComponentOne and
+        // replaces it, the lower case name sorts after both
+        testComponents.put("componentone",
+                createComponent("componentone", "Copyright Lower Case"));
+        testComponents.put("ComponentOne_twin",
+                createComponent("ComponentOne", "Copyright Upper Case"));
+
+        configManager.setTextFileOutput(true);
+        configManager.setShowCopyrights(true);
+        configManager.setShowFilePaths(true);
+        generator = new NRTReportGenerator(configManager, testComponents);
+
+        String projectName = new File(junitWorkingFolder.getRoot(),
+                "TextProject").getPath();
+        generator.generateTextReport(projectName);
+        textFilePrefix = projectName + "_text_files\\";
+    }
+
+    @Test
+    public void testLayout() throws IOException {
+        Assert.assertEquals(Arrays.asList("file paths (0)", "", "copyrights (2)",
+                "Copyright Test One", "Copyright Test Two", "",
+                "License texts (2)", "", SEPARATOR,
+                "FakeApache(Taken from KnowledgeBase)", "Fake Apache text",
+                SEPARATOR, "FakeMIT(Taken from KnowledgeBase)",
+                "This is a bunch of MIT text with some HTML thrown in for good measure."),
+                readTextFile(COMP_TWO_NAME + "_2.3"));
+    }
+
+    @Test
+    public void testNamesDifferingByCase() throws IOException {
+        // Written last, it wins where both names are the same file
+        Assert.assertEquals(Arrays.asList("file paths (0)", "",
+                "copyrights (1)", "Copyright Lower Case", "",
+                "License texts (1)", "", SEPARATOR,
+                "FakeApache(Taken from KnowledgeBase)", "Fake Apache text"),
+                readTextFile("componentone_1.0"));
+
+        if (!Files.isSameFile(getTextFile("componentone_1.0").toPath(),
+                getTextFile(COMP_ONE_NAME + "_1.0").toPath())) {
+            List<String> upperCase = readTextFile(COMP_ONE_NAME + "_1.0");
+            Assert.assertTrue(upperCase.contains("Copyright Upper Case"));
+            Assert.assertFalse(upperCase.contains("//somepath//test//"));
+        }
+    }
+
+    private static ComponentModel createComponent(String name, String copyright) {
+        LicenseModel license = new LicenseModel();
+        license.setId("apache_id_fake");
+        license.setName("FakeApache");
+        license.setText("Fake Apache text");
+
+        ComponentModel component = new ComponentModel();
+        component.setComponentId(name + "1.0");
+        component.setName(name);
+        component.setVersion("1.0");
+        component.addNewLicense(license);
+        component.addNewCopyright(copyright);
+        return component;
+    }
+
+    private static File getTextFile(String name) {
+        return new File(textFilePrefix + name + ".txt");
+    }
+
+    private static List<String> readTextFile(String name) throws IOException {
+        return Files.readAllLines(getTextFile(name).toPath(),
+                Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.safety.Whitelist;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.blackducksoftware.tools.nrt.model.LicenseModel;
+
+/**
+ * Tests the license sanitizer against the Jsoup based conversion it replaces
+ * 
+ */
+public class LicenseTextSanitizerTest
+{
+    private static final String[] LICENSE_TEXTS = {
+            "plain text",
+            "  spaced \n text  ",
+            "a < b && c > d",
+            "<p>GNU GENERAL PUBLIC LICENSE</p>\n<p>Version 2, June 1991</p>\n"
+                    + "<p>Copyright (C) 1989, 1991 Free Software Foundation, Inc. &lt;http://fsf.org/&gt;</p>\n",
+            "x &amp; y &lt;b&gt; &copy; 2004 &nbsp;z",
+            "&amp;amp; &amp;lt &ampx &copy2004 &unknown; & &1 &# &#x",
+            "&#65;&#x42;&#X43 &#; &#x; &#xZ &#150; &#128512;",
+            "<script>var a = '<b>';</script>after",
+            "<SCRIPT type=x>if (a</b) {}</Script >after",
+            "<style>p{}</style>x",
+            "<script>never ends",
+            "<script><!--</script>x-->y</script>z",
+            "<!-- comment -->t<!---->u<!--->v<!-->w<!-- a --!>x<!-- b -- c -->y",
+            "<!DOCTYPE html>a<?xml x?>b<!bogus>c</ bogus>d</>e",
+            "<a href=\"x>y\">link</a> <a href='x>y'>l</a> <a href=x>y</a>",
+            "<a =\"x>y\">z</a> <a b c=d/e f>t</a> <br/>x<br />y",
+            "<b>unclosed", "text <b", "text <b attr=\"", "text </", "text </b",
+            "<a<b>c", "<div/<b>x", "</p>x</br>y", "<b><i>m</b>n</i>o",
+            "<div>a<p>b</div>c</p>", "<pre>code</pre>", "<pre>\nx</pre>",
+            "<ul><li>one<li>two</ul>", "<html><head><body>x</body></html>y",
+            "<table><tr><td>t</td></tr></table>", "<title>t</title>x",
+            "a\r\nb", "<![CDATA[x]]>", "&lang; &rang; &notin; &not &notit;",
+            "\u00a0nb\u00a0", "emoji \ud83d\ude00 ok" };
+
+    @Test
+    public void testSameTextAsJsoup()
+    {
+        for (String licenseText : LICENSE_TEXTS) {
+            String expected = StringEscapeUtils.unescapeHtml(Jsoup.clean(
+                    licenseText, "", Whitelist.none(),
+                    new Document.OutputSettings().prettyPrint(false)));
+
+            Assert.assertEquals(licenseText, expected,
+                    LicenseTextSanitizer.toText(licenseText));
+        }
+    }
+
+    @Test
+    public void testEntitiesAreDecoded()
+    {
+        Assert.assertEquals("x & y <b> \u00a9 2004",
+                LicenseTextSanitizer.toText("x &amp; y &lt;b&gt; &copy; 2004"));
+    }
+
+    @Test
+    public void testMarkupIsDropped()
+    {
+        Assert.assertEquals("Licensed under the terms",
+                LicenseTextSanitizer.toText("<!-- header --><script>var a = '<b>';</script>"
+                        + "<p class=\"x\">Licensed <b>under</b> the terms</p>"));
+    }
+
+    @Test
+    public void testResultIsKeptPerText()
+    {
+        LicenseTextSanitizer sanitizer = new LicenseTextSanitizer();
+        LicenseModel first = createLicense("first_id", "<p>Same text</p>");
+        LicenseModel second = createLicense("second_id", "<p>Same text</p>");
+        LicenseModel other = createLicense("first_id", "<p>Other text</p>");
+
+        String text = sanitizer.sanitize(first);
+        Assert.assertEquals("Same text", text);
+        Assert.assertSame(text, sanitizer.sanitize(second));
+        Assert.assertEquals("Other text", sanitizer.sanitize(other));
+    }
+
+    private static LicenseModel createLicense(String id, String text)
+    {
+        LicenseModel license = new LicenseModel();
+        license.setId(id);
+        license.setText(text);
+        return license;
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.blackducksoftware.tools.nrt.generator.ReportDictionary.EncodedComponent;
+import com.google.gson.Gson;
+
+/**
+ * Tests the dictionary encoding of licenses and copyrights
+ * 
+ */
+public class ReportDictionaryTest extends HtmlReportGeneratorSetup {
+
+    private static ReportDictionary dictionary = null;
+
+    @BeforeClass
+    public static void setupComponents() {
+        populateComponents();
+        dictionary = new ReportDictionary(testComponents);
+    }
+
+    @Test
+    public void testLicensesAreWrittenOnce() {
+        // Apache is used by both components
+        Assert.assertEquals(2, dictionary.getLicenses().size());
+
+        EncodedComponent compOne = dictionary.getComponents().get(
+                COMP_ONE_NAME);
+        EncodedComponent compTwo = dictionary.getComponents().get(
+                COMP_TWO_NAME);
+        Assert.assertEquals(Arrays.asList(0), compOne.getLicenses());
+        Assert.assertEquals(Arrays.asList(0, 1), compTwo.getLicenses());
+        Assert.assertEquals("FakeMIT", dictionary.getLicenses().get(1)
+                .getName());
+    }
+
+    @Test
+    public void testCopyrights() {
+        EncodedComponent compOne = dictionary.getComponents().get(
+                COMP_ONE_NAME);
+        EncodedComponent compTwo = dictionary.getComponents().get(
+                COMP_TWO_NAME);
+
+        // No copyrights stays no copyrights
+        Assert.assertNull(compOne.getCopyrights());
+        Assert.assertEquals(Arrays.asList(0, 1), compTwo.getCopyrights());
+        Assert.assertEquals(
+                Arrays.asList("Copyright Test One", "Copyright Test Two"),
+                dictionary.getCopyrights());
+    }
+
+    @Test
+    public void testEncodedComponentIsReadBack() {
+        EncodedComponent compTwo = dictionary.getComponents().get(
+                COMP_TWO_NAME);
+        for (boolean compact : new boolean[] { true, false }) {
+            Gson gson = ReportJson.getGson(compact);
+            String json = gson.toJson(compTwo);
+            EncodedComponent readBack = gson.fromJson(json,
+                    EncodedComponent.class);
+
+            Assert.assertEquals(compTwo.getName(), readBack.getName());
+            Assert.assertEquals(compTwo.getHomePage(), readBack.getHomePage());
+            Assert.assertEquals(compTwo.getLicenses(), readBack.getLicenses());
+            Assert.assertEquals(compTwo.getCopyrights(),
+                    readBack.getCopyrights());
+            Assert.assertEquals(json, gson.toJson(readBack));
+        }
+    }
+
+    @Test
+    public void testComponentOrder() {
+        Assert.assertEquals(Arrays.asList(COMP_ONE_NAME, COMP_TWO_NAME),
+                Arrays.asList(dictionary.getComponents().keySet()
+                        .toArray(new String[0])));
+    }
+}
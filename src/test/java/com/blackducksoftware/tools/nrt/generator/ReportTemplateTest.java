@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.blackducksoftware.tools.nrt.config.NRTConstants;
+
+/**
+ * Tests the loading and splitting of the report templates
+ * 
+ */
+public class ReportTemplateTest
+{
+    @Test
+    public void testTemplateIsLoadedOnce() throws Exception
+    {
+        Assert.assertSame(ReportTemplate.get(NRTConstants.HTML_TEMPLATE_FILE),
+                ReportTemplate.get(NRTConstants.HTML_TEMPLATE_FILE));
+    }
+
+    @Test
+    public void testTemplateIsSplitAtDataBlock() throws Exception
+    {
+        for (String templateName : new String[] {
+                NRTConstants.HTML_TEMPLATE_FILE,
+                NRTConstants.HTML_SHARDED_TEMPLATE_FILE }) {
+            ReportTemplate template = ReportTemplate.get(templateName);
+
+            ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+            template.writePrefix(prefix);
+            ByteArrayOutputStream suffix = new ByteArrayOutputStream();
+            template.writeSuffix(suffix);
+
+            String prefixText = prefix.toString("UTF-8");
+            Assert.assertTrue(prefixText.trim().startsWith("<"));
+            Assert.assertTrue(prefixText.endsWith(">"));
+            Assert.assertTrue(prefixText.substring(prefixText.lastIndexOf('<'))
+                    .contains(NRTConstants.HTML_JSON_DATA_BLOCK));
+            Assert.assertTrue(suffix.toString("UTF-8").startsWith("</div"));
+        }
+    }
+
+    @Test
+    public void testRenderingScriptIsShared() throws Exception
+    {
+        for (String templateName : new String[] {
+                NRTConstants.HTML_TEMPLATE_FILE,
+                NRTConstants.HTML_SHARDED_TEMPLATE_FILE }) {
+            ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+            ReportTemplate.get(templateName).writePrefix(prefix);
+
+            String prefixText = prefix.toString("UTF-8");
+            Assert.assertFalse(prefixText
+                    .contains(NRTConstants.HTML_RENDERING_SCRIPT_FILE));
+            Assert.assertEquals(prefixText.indexOf("function buildRow("),
+                    prefixText.lastIndexOf("function buildRow("));
+            Assert.assertTrue(prefixText.contains("function buildRow("));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingTemplateIsRejected() throws Exception
+    {
+        ReportTemplate.get("no_such_template.html");
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the collapsing of near duplicate copyright statements
+ * 
+ */
+public class CopyrightCollapserTest
+{
+    private static final String CONTEXT = " Licensed under the Apache License, Version 2.0 (the \"License\");"
+            + " you may not use this file except in compliance with the License."
+            + " You may obtain a copy of the License";
+
+    @Test
+    public void testWhitespaceAndDecorationAreCanonical()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add(" * Copyright (c) 2004 Foo Inc.\n *");
+        collapser.add("Copyright  (c)\t2004   Foo Inc.");
+        collapser.add("// Copyright (c) 2004 Foo Inc.");
+        collapser.add(" \n ");
+
+        Assert.assertEquals(Arrays.asList("Copyright (c) 2004 Foo Inc."),
+                collapser.getCopyrights());
+        Assert.assertEquals(2, collapser.getCollapsedCount());
+    }
+
+    @Test
+    public void testYearsAreMerged()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add("Copyright (c) 2001-2003 The Apache Software Foundation.");
+        collapser.add("Copyright (c) 2005 The Apache Software Foundation.");
+        collapser.add("Copyright (c) 2004, 2008 The Apache Software Foundation.");
+
+        Assert.assertEquals(
+                Arrays.asList("Copyright (c) 2001-2005, 2008 The Apache Software Foundation."),
+                collapser.getCopyrights());
+    }
+
+    @Test
+    public void testYearsStayWithTheirHolder()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add("Copyright 2001 Foo Inc. Portions Copyright 2009 Bar Ltd.");
+        collapser.add("Copyright 2001 Foo Inc. Portions Copyright 2009 Bar Ltd.");
+        collapser.add("Copyright 2002 Foo Inc. Portions Copyright 2010 Bar Ltd.");
+
+        Assert.assertEquals(
+                Arrays.asList("Copyright 2001-2002 Foo Inc. Portions Copyright 2009-2010 Bar Ltd."),
+                collapser.getCopyrights());
+    }
+
+    @Test
+    public void testDifferentYearRunsAreKept()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.5);
+        collapser.add("Copyright 2001 Foo Inc. Released 2009." + CONTEXT);
+        collapser.add("Copyright 2001 Foo Inc. Released." + CONTEXT);
+
+        Assert.assertEquals(2, collapser.getCopyrights().size());
+    }
+
+    @Test
+    public void testSingleStatementIsKeptAsIs()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add("Copyright 2001,2002 Foo Inc.");
+
+        Assert.assertEquals(Arrays.asList("Copyright 2001,2002 Foo Inc."),
+                collapser.getCopyrights());
+    }
+
+    @Test
+    public void testSimilarContextIsCollapsed()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add("Copyright 2010 Bar Corp." + CONTEXT + " at");
+        collapser.add("Copyright 2011 Bar Corp." + CONTEXT + " here");
+
+        Assert.assertEquals(
+                Arrays.asList("Copyright 2010-2011 Bar Corp." + CONTEXT + " at"),
+                collapser.getCopyrights());
+    }
+
+    @Test
+    public void testDifferentHoldersAreKept()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.5);
+        collapser.add("Copyright 2010 Bar Corp." + CONTEXT);
+        collapser.add("Copyright 2010 Baz Corp." + CONTEXT);
+        collapser.add("Copyright 2010 Bar Corp. and Baz Ltd." + CONTEXT);
+
+        Assert.assertEquals(3, collapser.getCopyrights().size());
+        Assert.assertEquals(0, collapser.getCollapsedCount());
+    }
+
+    @Test
+    public void testDifferentContextIsKept()
+    {
+        CopyrightCollapser collapser = new CopyrightCollapser(0.8);
+        collapser.add("Copyright 2010 Bar Corp." + CONTEXT);
+        collapser.add("Copyright 2010 Bar Corp. Permission is hereby granted,"
+                + " free of charge, to any person obtaining a copy of this software");
+
+        Assert.assertEquals(2, collapser.getCopyrights().size());
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the index over the identified files report
+ * 
+ */
+public class IdentifiedFilesIndexTest
+{
+    @Test
+    public void testOwnersOfPaths()
+    {
+        IdentifiedFilesIndex index = new IdentifiedFilesIndex();
+        index.addIdentifiedFile("a:1", "/src/shared/A.java");
+        index.addIdentifiedFile("a:1", "/src/a/B.java");
+        index.addIdentifiedFile("b:1", "/src/shared/A.java");
+        index.addIdentifiedFile("a:1", "/src/shared/A.java");
+        index.addIdentifiedFile("c:1", "/src/shared/A.java");
+
+        Assert.assertEquals(Arrays.asList("a:1", "b:1", "c:1"),
+                new ArrayList<String>(index.getComponentsForPath("/src/shared/A.java")));
+        Assert.assertEquals(Collections.singleton("a:1"), index.getComponentsForPath("/src/a/B.java"));
+        Assert.assertTrue(index.getComponentsForPath("/src/shared/").isEmpty());
+        Assert.assertTrue(index.getComponentsForPath("/src/other/C.java").isEmpty());
+
+        Assert.assertEquals(2, index.getPathCount());
+        Assert.assertEquals(3, index.getComponentCount());
+        Assert.assertEquals(2, index.getPathsForComponent("a:1").size());
+        Assert.assertNull(index.getPathsForComponent("d:1"));
+    }
+
+    @Test
+    public void testManyPaths()
+    {
+        IdentifiedFilesIndex index = new IdentifiedFilesIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.addIdentifiedFile("a:1", "/src/" + (i % 50) + "/File" + i + ".java");
+            if (i % 3 == 0) {
+                index.addIdentifiedFile("b:1", "/src/" + (i % 50) + "/File" + i + ".java");
+            }
+        }
+
+        Assert.assertEquals(5000, index.getPathCount());
+        Assert.assertEquals(Arrays.asList("a:1", "b:1"),
+                new ArrayList<String>(index.getComponentsForPath("/src/3/File4503.java")));
+        Assert.assertEquals(Collections.singleton("a:1"), index.getComponentsForPath("/src/4/File4504.java"));
+    }
+
+    @Test
+    public void testLicenseFilesAreIndexed()
+    {
+        IdentifiedFilesIndex index = new IdentifiedFilesIndex(Arrays.asList("LICENSE", "COPYING"));
+        index.addIdentifiedFile("a:1", "/a/LICENSE");
+        index.addIdentifiedFile("b:1", "/b/LICENSE");
+        index.addIdentifiedFile("b:1", "/b/COPYING.txt");
+        index.addIdentifiedFile("b:1", "/b/src/Main.java");
+
+        Assert.assertEquals(Arrays.asList("/a/LICENSE", "/b/LICENSE"),
+                new ArrayList<String>(index.getLicenseFilePaths("LICENSE")));
+        Assert.assertTrue(index.getLicenseFilePaths("COPYING").isEmpty());
+        Assert.assertEquals(2, index.getAllLicenseFilePaths().size());
+    }
+}
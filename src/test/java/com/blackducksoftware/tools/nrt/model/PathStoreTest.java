@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the prefix compressed path storage and the sets built on it
+ * 
+ */
+public class PathStoreTest
+{
+
+    @Test
+    public void testPathsRoundTrip()
+    {
+        PathStore store = new PathStore();
+        List<String> paths = Arrays.asList("/src/main/A.java", "/src/main/B.java",
+                "//somepath//test//", "relative/path", "", "/", "/src/main/");
+
+        for (String path : paths) {
+            int id = store.add(path);
+            Assert.assertEquals(id, store.add(path));
+            Assert.assertEquals(path, store.get(id));
+            Assert.assertEquals(id, store.find(path));
+        }
+
+        Assert.assertEquals(PathStore.NOT_FOUND, store.find("/src/main/C.java"));
+        Assert.assertEquals(PathStore.NOT_FOUND, store.find("/src/other/"));
+    }
+
+    @Test
+    public void testPrefixesAreShared()
+    {
+        PathStore store = new PathStore();
+        for (int i = 0; i < 5000; i++) {
+            store.add("/very/long/common/prefix/dir" + (i % 10) + "/File" + i + ".java");
+        }
+
+        // 5000 files, 10 directories and the 5 shared parents
+        Assert.assertEquals(1 + 5 + 10 + 5000, store.getNodeCount());
+        Assert.assertEquals("/very/long/common/prefix/dir7/File4327.java",
+                store.get(store.find("/very/long/common/prefix/dir7/File4327.java")));
+    }
+
+    @Test
+    public void testPathSet()
+    {
+        PathStore store = new PathStore();
+        PathSet first = new PathSet(store);
+        Assert.assertTrue(first.add("//somepath//test//"));
+        Assert.assertTrue(first.add("//somePathTwo//testTwo"));
+        Assert.assertFalse(first.add("//somepath//test//"));
+
+        Assert.assertEquals(2, first.size());
+        Assert.assertTrue(first.contains("//somePathTwo//testTwo"));
+        Assert.assertFalse(first.contains("//somePathTwo//"));
+        Assert.assertFalse(first.contains(null));
+
+        // Sorted iteration
+        Assert.assertEquals(Arrays.asList("//somePathTwo//testTwo", "//somepath//test//"),
+                new ArrayList<String>(first));
+
+        PathSet second = new PathSet(first);
+        for (int i = 0; i < 100; i++) {
+            second.add("/dir/" + i);
+        }
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(102, second.size());
+
+        Assert.assertTrue(first.addAll(second));
+        Assert.assertEquals(second, first);
+    }
+}
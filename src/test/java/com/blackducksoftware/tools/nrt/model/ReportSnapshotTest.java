@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Black Duck Software, Inc.
+ * http://www.blackducksoftware.com/
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ *  under the License.
+ *
+ *******************************************************************************/
+package com.blackducksoftware.tools.nrt.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests saving and loading the snapshot of an incremental run
+ * 
+ */
+public class ReportSnapshotTest
+{
+    @Rule
+    public TemporaryFolder junitWorkingFolder = new TemporaryFolder();
+
+    @Test
+    public void testComponentsRoundTripWithoutPaths() throws Exception
+    {
+        ReportSnapshot snapshot = new ReportSnapshot("settings");
+        snapshot.putComponent("c1:1", "f1", createComponent("c1", license("l1", "License one")));
+        File snapshotFile = new File(junitWorkingFolder.getRoot(), "snapshot.json.gz");
+        snapshot.save(snapshotFile);
+
+        Assert.assertFalse(readSnapshot(snapshotFile).contains("/src/c1/"));
+
+        ReportSnapshot loaded = ReportSnapshot.load(snapshotFile);
+        Assert.assertEquals("settings", loaded.getSettingsFingerprint());
+        Assert.assertNull(loaded.getComponent("c1:1", "changed"));
+        Assert.assertNull(loaded.getComponent("c2:1", "f1"));
+
+        ComponentModel component = loaded.getComponent("c1:1", "f1");
+        Assert.assertEquals("id_c1", component.getComponentId());
+        Assert.assertEquals("c1", component.getName());
+        Assert.assertEquals("1", component.getVersion());
+        Assert.assertEquals("http://c1", component.getHomePage());
+        Assert.assertNull(component.getPaths());
+        Assert.assertEquals(Arrays.asList("Copyright c1 a", "Copyright c1 b"),
+                Arrays.asList(component.getCopyrights().toArray()));
+        LicenseModel license = component.getLicenseModels().iterator().next();
+        Assert.assertEquals("l1", license.getId());
+        Assert.assertEquals("License one", license.getText());
+    }
+
+    @Test
+    public void testLicensesAreStoredOnce() throws Exception
+    {
+        ReportSnapshot snapshot = new ReportSnapshot("settings");
+        snapshot.putComponent("c1:1", "f1", createComponent("c1", license("l1", "Shared text"),
+                license("custom", "File one")));
+        snapshot.putComponent("c2:1", "f2", createComponent("c2", license("l1", "Shared text"),
+                license("custom", "File two")));
+        File snapshotFile = new File(junitWorkingFolder.getRoot(), "snapshot.json.gz");
+        snapshot.save(snapshotFile);
+
+        String json = readSnapshot(snapshotFile);
+        Assert.assertEquals(json.indexOf("Shared text"), json.lastIndexOf("Shared text"));
+
+        ReportSnapshot loaded = ReportSnapshot.load(snapshotFile);
+        Iterator<LicenseModel> first = loaded.getComponent("c1:1", "f1").getLicenseModels().iterator();
+        Iterator<LicenseModel> second = loaded.getComponent("c2:1", "f2").getLicenseModels().iterator();
+        Assert.assertSame(first.next(), second.next());
+        // Same id, different license files
+        Assert.assertEquals("File one", first.next().getText());
+        Assert.assertEquals("File two", second.next().getText());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherFormatIsRejected() throws Exception
+    {
+        File snapshotFile = new File(junitWorkingFolder.getRoot(), "snapshot.json.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(snapshotFile)),
+                "UTF-8")) {
+            writer.write("{\"settingsFingerprint\":\"settings\",\"components\":{}}");
+        }
+
+        ReportSnapshot.load(snapshotFile);
+    }
+
+    private ComponentModel createComponent(String name, LicenseModel... licenses)
+    {
+        ComponentModel component = new ComponentModel();
+        component.setComponentId("id_" + name);
+        component.setName(name);
+        component.setVersion("1");
+        component.setHomePage("http://" + name);
+        component.addNewPath("/src/" + name + "/A.java");
+        component.addNewCopyright("Copyright " + name + " a");
+        component.addNewCopyright("Copyright " + name + " b");
+        for (LicenseModel license : licenses) {
+            component.addNewLicense(license);
+        }
+        return component;
+    }
+
+    private LicenseModel license(String id, String text)
+    {
+        LicenseModel license = new LicenseModel();
+        license.setId(id);
+        license.setName(id);
+        license.setText(text);
+        return license;
+    }
+
+    private String readSnapshot(File snapshotFile) throws IOException
+    {
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(snapshotFile)),
+                "UTF-8")) {
+            return IOUtils.toString(reader);
+        }
+    }
+}